@@ -0,0 +1,624 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * An INI dictionary stored in a few flat buffers, for files too large to keep as one object per
+ * entry.
+ *
+ * <p>
+ * An {@link INIParser} keeps every entry as an object holding two Strings, and every key repeats
+ * the name of its section. A {@code CompactINIParser} instead stores each section name once,
+ * keeps the keys without their section prefix and the values as UTF-8 in a single shared byte
+ * pool, and indexes them with an open-addressing table of ints. An entry costs six ints plus
+ * its encoded bytes, and the number of objects does not grow with the number of entries, which
+ * typically cuts the retained heap by three to five times for large files.
+ *
+ * <p>
+ * Created with {@code new CompactINIParser(true)}, the pool, the records and the table are
+ * allocated off the Java heap, in direct buffers. The heap then only holds the section names,
+ * so even very large dictionaries add nothing to the work of the garbage collector. The memory
+ * is released by {@link #close()}, through {@link INIDirectMemory}, or otherwise when the parser
+ * is garbage collected.
+ *
+ * <p>
+ * This is a separate class rather than a storage mode of {@link INIParser} because
+ * {@code INIParser} is built on its entries being objects: {@link INIHandle}s keep references
+ * to them, typed conversions are cached in them, and in concurrent mode readers keep the
+ * dictionary they started with while a writer copies it. None of that can point into a flat
+ * buffer that is compacted in place and freed on close, so this class offers the lookups and
+ * writes of {@code INIParser}, with the same method names and semantics, without those features.
+ *
+ * <p>
+ * Keys follow the same rules as in {@link INIParser}: they are named {@code section:key},
+ * stored in lowercase and matched ignoring case, without allocating. Values are decoded into a
+ * String on every read and typed values parsed on every read, so this class trades some read
+ * speed for memory. Replacing a value with a longer one or removing an entry leaves unused bytes
+ * in the pool, which is compacted once they make up half of it.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is not thread-safe. Access should be synchronized
+ * externally if used in a concurrent environment. In particular, {@link #close()} must not run
+ * while another thread still uses the parser.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * try (CompactINIParser parser = new CompactINIParser(true)) {
+ *     parser.load("huge.ini");
+ *     int port = parser.getInt("server:port", 8080);
+ * }
+ * }</pre>
+ */
+public final class CompactINIParser implements Closeable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Fields of a record, RECORD ints per entry. A section of -1 means the key has no ':'.
+    private static final int SECTION = 0, KEY_OFFSET = 1, KEY_LENGTH = 2, VALUE_OFFSET = 3, VALUE_LENGTH = 4;
+    private static final int RECORD = 5;
+
+    private final boolean offHeap;
+
+    // Interned section names; ids are positions in the list.
+    private final List<String> sectionNames = new ArrayList<>();
+    private final Map<String, Integer> sectionIds = new HashMap<>();
+
+    // Records of RECORD ints, kept dense: removing one moves the last record into its place.
+    private ByteBuffer records;
+    private ByteBuffer hashes;
+    private int size;
+
+    // Slots hold a record index plus one, 0 marking an empty slot.
+    private ByteBuffer table;
+    private int capacity;
+
+    private ByteBuffer pool;
+    private int poolSize;
+    private int garbage;
+
+    private boolean closed;
+
+    /**
+     * Constructs an empty CompactINIParser instance that keeps its data on the heap.
+     */
+    public CompactINIParser() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty CompactINIParser instance, optionally keeping its data off the heap.
+     *
+     * @param offHeap {@code true} to store entries in direct buffers, released by {@link #close()}
+     */
+    public CompactINIParser(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.records = allocate(MIN_CAPACITY * RECORD * 4);
+        this.hashes = allocate(MIN_CAPACITY * 4);
+        this.table = allocate(MIN_CAPACITY * 4);
+        this.capacity = MIN_CAPACITY;
+        this.pool = allocate(1024);
+    }
+
+    /**
+     * Loads the contents of a UTF-8 encoded INI file, adding its entries to the dictionary.
+     *
+     * <p>
+     * The file is parsed as a stream, so apart from the dictionary itself loading takes constant
+     * memory. Syntax errors are reported to the {@linkplain INIParser#setErrorCallback error
+     * callback} and the malformed lines skipped, as with {@link INIParser#load(String)}.
+     *
+     * @param fileName the name of the INI file to parse
+     * @throws IOException           if the file cannot be read
+     * @throws IllegalStateException if the parser is closed
+     */
+    public void load(String fileName) throws IOException {
+        ensureOpen();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(fileName)), StandardCharsets.UTF_8)) {
+            INIParser.parse(reader, new INIEventHandler() {
+                private String sectionName;
+                private int section = -1;
+
+                @Override
+                public void keyValue(String sectionName, String key, String value, long line, long offset) {
+                    if (!sectionName.equals(this.sectionName)) {
+                        this.sectionName = sectionName;
+                        this.section = intern(sectionName);
+                    }
+                    put(section, key, value);
+                }
+
+                @Override
+                public void syntaxError(String message, long line, long offset) {
+                    INIParser.errorCallback().println(message);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of entries in the dictionary.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the dictionary, for comparison with
+     * {@link INIParserCache#getRetainedBytes()}. Off-heap data is not included.
+     *
+     * @return the estimate in bytes
+     */
+    public long getRetainedBytes() {
+        long bytes = 128;
+        for (String name : sectionNames) bytes += 120 + 2L * name.length();
+        return offHeap || closed ? bytes : bytes + bufferBytes();
+    }
+
+    /**
+     * Returns the memory allocated off the heap, which {@link #close()} releases.
+     *
+     * @return the allocated bytes, 0 if the parser keeps its data on the heap or is closed
+     */
+    public long getOffHeapBytes() {
+        return offHeap && !closed ? bufferBytes() : 0;
+    }
+
+    /**
+     * Retrieves the string value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default value if the key is not found
+     * @return the value associated with the key, or {@code defaultValue} if the key is absent
+     * @throws IllegalStateException if the parser is closed
+     */
+    public String getString(String key, String defaultValue) {
+        ensureOpen();
+        int record = find(key);
+        return record != -1 ? value(record) : defaultValue;
+    }
+
+    /**
+     * Retrieves the integer value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default integer value if the key is not found or cannot be parsed as an integer
+     * @return the integer value, or {@code defaultValue} if the key is absent or invalid
+     * @throws IllegalStateException if the parser is closed
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves the long value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default long value if the key is not found or cannot be parsed as a long
+     * @return the long value, or {@code defaultValue} if the key is absent or invalid
+     * @throws IllegalStateException if the parser is closed
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves the double value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default double value if the key is not found or cannot be parsed as a double
+     * @return the double value, or {@code defaultValue} if the key is absent or invalid
+     * @throws IllegalStateException if the parser is closed
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves the boolean value associated with the specified key. Recognizes the same words
+     * as {@link INIParser#getBoolean(String, boolean)}.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default boolean value if the key is not found or cannot be parsed as a boolean
+     * @return the boolean value, or {@code defaultValue} if the key is absent or invalid
+     * @throws IllegalStateException if the parser is closed
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        for (String word : new String[] {"1", "y", "yes", "true"}) {
+            if (value.equalsIgnoreCase(word)) return true;
+        }
+        for (String word : new String[] {"0", "n", "no", "false"}) {
+            if (value.equalsIgnoreCase(word)) return false;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Checks if a specific entry is present within the dictionary.
+     *
+     * @param entry the entry to search for
+     * @return {@code true} if the entry exists, {@code false} otherwise
+     * @throws IllegalStateException if the parser is closed
+     */
+    public boolean findEntry(String entry) {
+        ensureOpen();
+        return find(entry) != -1;
+    }
+
+    /**
+     * Sets or updates an entry in the dictionary with the specified value.
+     *
+     * @param entry the entry key
+     * @param value the value to associate with the entry
+     * @return 0 if set successfully, or -1 if the entry is null or empty
+     * @throws IllegalStateException if the parser is closed
+     */
+    public int setEntry(String entry, String value) {
+        ensureOpen();
+        if (entry == null || entry.isEmpty()) {
+            return -1;
+        }
+        String key = entry.toLowerCase();
+        int colon = key.indexOf(':');
+        if (colon == -1) put(-1, key, value);
+        else put(intern(key.substring(0, colon)), key.substring(colon + 1), value);
+        return 0;
+    }
+
+    /**
+     * Removes an entry from the dictionary if it exists.
+     *
+     * @param entry the entry to remove
+     * @throws IllegalStateException if the parser is closed
+     */
+    public void unsetEntry(String entry) {
+        ensureOpen();
+        int slot = findSlot(entry, INIKeyTable.hash(entry));
+        if (slot == -1) return;
+        int record = slot(slot) - 1;
+        garbage += field(record, KEY_LENGTH) + Math.max(field(record, VALUE_LENGTH), 0);
+
+        // Shift later slots of the probe run back, so no tombstones are left.
+        int mask = capacity - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; slot(i) != 0; i = (i + 1) & mask) {
+            int home = hash(slot(i) - 1) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                setSlot(hole, slot(i));
+                hole = i;
+            }
+        }
+        setSlot(hole, 0);
+
+        // Move the last record into the freed one and repoint its slot.
+        int last = --size;
+        if (record != last) {
+            for (int f = 0; f < RECORD; f++) setField(record, f, field(last, f));
+            setHash(record, hash(last));
+            int i = hash(last) & mask;
+            while (slot(i) != last + 1) i = (i + 1) & mask;
+            setSlot(i, record + 1);
+        }
+        compactIfWasteful();
+    }
+
+    /**
+     * Dumps all entries in the dictionary to the specified PrintStream, in the same format as
+     * {@link INIParser#dump(PrintStream)}.
+     *
+     * @param out the PrintStream to write dictionary contents to, e.g., {@code System.out}
+     * @throws IllegalStateException if the parser is closed
+     */
+    public void dump(PrintStream out) {
+        ensureOpen();
+        for (int record = 0; record < size; record++) {
+            int section = field(record, SECTION);
+            String key = decode(field(record, KEY_OFFSET), field(record, KEY_LENGTH));
+            out.println("[" + (section == -1 ? key : sectionNames.get(section) + ":" + key) + "]=" + value(record));
+        }
+    }
+
+    /**
+     * Removes all entries and releases the memory of the dictionary. Further use of the parser
+     * throws {@link IllegalStateException}. Closing a closed parser has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (ByteBuffer buffer : new ByteBuffer[] {records, hashes, table, pool}) INIDirectMemory.free(buffer);
+        records = hashes = table = pool = null;
+        sectionNames.clear();
+        sectionIds.clear();
+        size = 0;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("CompactINIParser is closed");
+    }
+
+    private int field(int record, int field) {
+        return records.getInt((record * RECORD + field) << 2);
+    }
+
+    private void setField(int record, int field, int value) {
+        records.putInt((record * RECORD + field) << 2, value);
+    }
+
+    private int hash(int record) {
+        return hashes.getInt(record << 2);
+    }
+
+    private void setHash(int record, int hash) {
+        hashes.putInt(record << 2, hash);
+    }
+
+    private int slot(int i) {
+        return table.getInt(i << 2);
+    }
+
+    private void setSlot(int i, int value) {
+        table.putInt(i << 2, value);
+    }
+
+    private int intern(String name) {
+        Integer id = sectionIds.get(name);
+        if (id == null) {
+            id = sectionNames.size();
+            sectionNames.add(name);
+            sectionIds.put(name, id);
+        }
+        return id;
+    }
+
+    // Adds or replaces the entry for a lowercase key, given without its section prefix.
+    private void put(int section, String key, String value) {
+        int hash = hash(section, key);
+        int mask = capacity - 1;
+        String name = null;
+        for (int i = hash & mask; slot(i) != 0; i = (i + 1) & mask) {
+            int record = slot(i) - 1;
+            if (hash(record) != hash) continue;
+            // Built only on a hash match; the same name may have been split at another ':'.
+            if (name == null) name = section == -1 ? key : sectionNames.get(section) + ":" + key;
+            if (named(record, name)) {
+                setValue(record, value);
+                return;
+            }
+        }
+
+        if ((size + 1) * 4 > capacity * 3) rehash(capacity * 2);
+        if ((size + 1) * 4 > hashes.capacity()) {
+            hashes = grow(hashes, hashes.capacity() * 2);
+            records = grow(records, records.capacity() * 2);
+        }
+        int record = size++;
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        setField(record, SECTION, section);
+        setField(record, KEY_OFFSET, append(bytes));
+        setField(record, KEY_LENGTH, bytes.length);
+        setField(record, VALUE_LENGTH, -1);
+        setHash(record, hash);
+        setValue(record, value);
+
+        mask = capacity - 1;
+        int i = hash & mask;
+        while (slot(i) != 0) i = (i + 1) & mask;
+        setSlot(i, record + 1);
+    }
+
+    private void setValue(int record, String value) {
+        int oldLength = field(record, VALUE_LENGTH);
+        if (value == null) {
+            garbage += Math.max(oldLength, 0);
+            setField(record, VALUE_LENGTH, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= oldLength) {
+            // Fits in place of the old value.
+            pool.put(field(record, VALUE_OFFSET), bytes);
+            garbage += oldLength - bytes.length;
+        } else {
+            garbage += Math.max(oldLength, 0);
+            setField(record, VALUE_OFFSET, append(bytes));
+        }
+        setField(record, VALUE_LENGTH, bytes.length);
+        compactIfWasteful();
+    }
+
+    private int append(byte[] bytes) {
+        if (poolSize + bytes.length > pool.capacity()) {
+            long grown = Math.max((long) pool.capacity() * 2, (long) poolSize + bytes.length);
+            if (grown > Integer.MAX_VALUE - 8) {
+                if ((long) poolSize + bytes.length > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Dictionary exceeds the maximum pool size");
+                }
+                grown = Integer.MAX_VALUE - 8;
+            }
+            pool = grow(pool, (int) grown);
+        }
+        int offset = poolSize;
+        pool.put(offset, bytes);
+        poolSize += bytes.length;
+        return offset;
+    }
+
+    // Copies the live bytes to a new pool once unused bytes make up half of the current one.
+    private void compactIfWasteful() {
+        if (garbage < 4096 || garbage * 2 < poolSize) return;
+        ByteBuffer compacted = allocate(Math.max(1024, poolSize - garbage));
+        int next = 0;
+        for (int record = 0; record < size; record++) {
+            next = move(record, KEY_OFFSET, KEY_LENGTH, compacted, next);
+            next = move(record, VALUE_OFFSET, VALUE_LENGTH, compacted, next);
+        }
+        INIDirectMemory.free(pool);
+        pool = compacted;
+        poolSize = next;
+        garbage = 0;
+    }
+
+    // Copies the bytes a record field points to into the new pool at next, returning the new end.
+    private int move(int record, int offsetField, int lengthField, ByteBuffer compacted, int next) {
+        int length = field(record, lengthField);
+        if (length == -1) return next;
+        // Empty keys and values are repointed too, so no offset is left beyond the new pool.
+        compacted.put(next, pool, field(record, offsetField), length);
+        setField(record, offsetField, next);
+        return next + length;
+    }
+
+    private void rehash(int newCapacity) {
+        INIDirectMemory.free(table);
+        table = allocate(newCapacity * 4);
+        capacity = newCapacity;
+        int mask = newCapacity - 1;
+        for (int record = 0; record < size; record++) {
+            int i = hash(record) & mask;
+            while (slot(i) != 0) i = (i + 1) & mask;
+            setSlot(i, record + 1);
+        }
+    }
+
+    private int find(String key) {
+        int slot = findSlot(key, INIKeyTable.hash(key));
+        return slot != -1 ? slot(slot) - 1 : -1;
+    }
+
+    // Returns the slot holding the record for a full section:key name, or -1.
+    private int findSlot(String key, int hash) {
+        int mask = capacity - 1;
+        for (int i = hash & mask; slot(i) != 0; i = (i + 1) & mask) {
+            int record = slot(i) - 1;
+            if (hash(record) == hash && named(record, key)) return i;
+        }
+        return -1;
+    }
+
+    // Whether the record's full section:key name is name, ignoring case. Section names may
+    // contain ':', so the record's own section name decides where its key starts.
+    private boolean named(int record, String name) {
+        int section = field(record, SECTION);
+        int keyStart = 0;
+        if (section != -1) {
+            String sectionName = sectionNames.get(section);
+            int colon = sectionName.length();
+            if (name.length() <= colon || name.charAt(colon) != ':' || !sectionMatches(sectionName, name, colon)) {
+                return false;
+            }
+            keyStart = colon + 1;
+        }
+        return matches(name, keyStart, name.length(), field(record, KEY_OFFSET), field(record, KEY_LENGTH));
+    }
+
+    private static boolean sectionMatches(String name, String key, int colon) {
+        if (name.length() != colon) return false;
+        for (int i = 0; i < colon; i++) {
+            if (!sameFolded(name.charAt(i), key.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // Compares chars from..to of s, ignoring case, with the UTF-8 bytes at offset..offset+length.
+    private boolean matches(String s, int from, int to, int offset, int length) {
+        int end = offset + length;
+        int i = from;
+        while (offset < end) {
+            int b = pool.get(offset);
+            int c;
+            if (b >= 0) {
+                c = b;
+                offset++;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = (b & 0x1F) << 6 | pool.get(offset + 1) & 0x3F;
+                offset += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                c = (b & 0x0F) << 12 | (pool.get(offset + 1) & 0x3F) << 6 | pool.get(offset + 2) & 0x3F;
+                offset += 3;
+            } else {
+                c = (b & 0x07) << 18 | (pool.get(offset + 1) & 0x3F) << 12 | (pool.get(offset + 2) & 0x3F) << 6
+                        | pool.get(offset + 3) & 0x3F;
+                offset += 4;
+            }
+            if (c < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (i >= to || !sameFolded(s.charAt(i++), (char) c)) return false;
+            } else {
+                if (i + 1 >= to || s.charAt(i++) != Character.highSurrogate(c) || s.charAt(i++) != Character.lowSurrogate(c)) {
+                    return false;
+                }
+            }
+        }
+        return i == to;
+    }
+
+    private static boolean sameFolded(char x, char y) {
+        return x == y || INIKeyTable.fold(x) == INIKeyTable.fold(y);
+    }
+
+    // Same value as INIKeyTable.hash(section + ":" + key), without building that String.
+    private int hash(int section, String key) {
+        int h = 0;
+        if (section != -1) {
+            String name = sectionNames.get(section);
+            for (int i = 0; i < name.length(); i++) h = 31 * h + INIKeyTable.fold(name.charAt(i));
+            h = 31 * h + ':';
+        }
+        for (int i = 0; i < key.length(); i++) h = 31 * h + INIKeyTable.fold(key.charAt(i));
+        return h ^ (h >>> 16);
+    }
+
+    private String value(int record) {
+        int length = field(record, VALUE_LENGTH);
+        return length == -1 ? null : decode(field(record, VALUE_OFFSET), length);
+    }
+
+    private String decode(int offset, int length) {
+        if (pool.hasArray()) {
+            return new String(pool.array(), pool.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        pool.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long bufferBytes() {
+        return (long) records.capacity() + hashes.capacity() + table.capacity() + pool.capacity();
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        return (offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(ByteOrder.nativeOrder());
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer, int bytes) {
+        ByteBuffer grown = allocate(bytes);
+        grown.put(0, buffer, 0, buffer.capacity());
+        INIDirectMemory.free(buffer);
+        return grown;
+    }
+}
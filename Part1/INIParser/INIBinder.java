@@ -0,0 +1,304 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+
+/**
+ * Binds the entries of one section onto a record or an interface, for
+ * {@link INIParser#bind(String, Class)}.
+ *
+ * <p>
+ * Each record component, or each no-argument method of an interface, is bound to the entry of the
+ * section named like it, or named by its {@link Key} annotation. The supported types are
+ * {@code String}, {@code int}, {@code long}, {@code double}, {@code boolean}, their wrapper
+ * classes and enums. Numbers and booleans are converted like {@link INIParser#getInt} and
+ * {@link INIParser#getBoolean} convert them, and enum constants are matched ignoring case. A
+ * missing entry, or one that cannot be converted, takes the value of the {@link Default}
+ * annotation; without one, an interface's {@code default} method is called, and otherwise the
+ * value is {@code null}, or zero or {@code false} for primitives.
+ *
+ * <p>
+ * A type is inspected once, on its first bind: its properties, their converters and defaults,
+ * and for records a {@link MethodHandle} to the canonical constructor are resolved and cached.
+ * Every later bind only looks up the section's entries and converts them, so binding many
+ * sections of one type costs about as much as the same number of {@code getInt} calls. Interface
+ * instances are proxies over the values read when they were bound.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * record Service(String host, int port, @INIBinder.Default("30") int timeout) {}
+ *
+ * Service service = parser.bind("svc", Service.class); // reads svc:host, svc:port, svc:timeout
+ * }</pre>
+ */
+public final class INIBinder {
+
+    /**
+     * Names the entry a property is bound to, instead of the property's own name.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.RECORD_COMPONENT, ElementType.METHOD})
+    public @interface Key {
+        String value();
+    }
+
+    /**
+     * The text used when a property's entry is missing or cannot be converted.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.RECORD_COMPONENT, ElementType.METHOD})
+    public @interface Default {
+        String value();
+    }
+
+    private static final int STRING = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4, ENUM = 5;
+
+    // Marks an interface property left to the interface's default method.
+    private static final Object DEFAULT_METHOD = new Object();
+
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            if (type.isRecord()) return new RecordBinding(type);
+            if (type.isInterface()) return new InterfaceBinding(type);
+            throw new IllegalArgumentException(type.getName() + " is neither a record nor an interface");
+        }
+    };
+
+    private INIBinder() {
+    }
+
+    /**
+     * Binds {@code section} of {@code dictionary} onto an instance of {@code type}.
+     */
+    static <T> T bind(INIDictionary dictionary, String section, Class<T> type) {
+        return type.cast(BINDINGS.get(type).bind(dictionary, section));
+    }
+
+    private abstract static class Binding {
+        final Property[] properties;
+
+        Binding(Property[] properties) {
+            this.properties = properties;
+        }
+
+        abstract Object bind(INIDictionary dictionary, String section);
+
+        // Reads every property from the entries of section.
+        Object[] read(INIDictionary dictionary, String section) {
+            Object[] values = new Object[properties.length];
+            StringBuilder name = new StringBuilder(section.length() + 32).append(section).append(':');
+            int prefix = name.length();
+            for (int i = 0; i < values.length; i++) {
+                name.setLength(prefix);
+                values[i] = properties[i].read(dictionary, name);
+            }
+            return values;
+        }
+    }
+
+    private static final class RecordBinding extends Binding {
+        // The canonical constructor, taking the component values as one Object[].
+        private final MethodHandle constructor;
+
+        RecordBinding(Class<?> type) {
+            super(propertiesOf(type));
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) types[i] = components[i].getType();
+            try {
+                Constructor<?> canonical = type.getDeclaredConstructor(types);
+                canonical.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, types.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalArgumentException("Cannot construct record " + type.getName(), e);
+            }
+        }
+
+        private static Property[] propertiesOf(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            Property[] properties = new Property[components.length];
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent component = components[i];
+                properties[i] = new Property(type, component.getName(), component.getType(), component, false);
+            }
+            return properties;
+        }
+
+        @Override
+        Object bind(INIDictionary dictionary, String section) {
+            try {
+                return (Object) constructor.invokeExact(read(dictionary, section));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Record constructor failed", e);
+            }
+        }
+    }
+
+    private static final class InterfaceBinding extends Binding {
+        private final Class<?> type;
+        private final Map<Method, Integer> indexes;
+
+        InterfaceBinding(Class<?> type) {
+            super(propertiesOf(type));
+            this.type = type;
+            this.indexes = new HashMap<>();
+            for (Method method : methodsOf(type)) indexes.put(method, indexes.size());
+        }
+
+        private static List<Method> methodsOf(Class<?> type) {
+            List<Method> methods = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) continue;
+                if (method.getParameterCount() != 0 || method.getReturnType() == void.class) {
+                    throw new IllegalArgumentException("Cannot bind " + type.getName() + "." + method.getName()
+                            + ": interface methods must take no arguments and return a value");
+                }
+                methods.add(method);
+            }
+            methods.sort(Comparator.comparing(Method::getName));
+            return methods;
+        }
+
+        private static Property[] propertiesOf(Class<?> type) {
+            List<Method> methods = methodsOf(type);
+            Property[] properties = new Property[methods.size()];
+            for (int i = 0; i < properties.length; i++) {
+                Method method = methods.get(i);
+                properties[i] = new Property(type, method.getName(), method.getReturnType(), method, method.isDefault());
+            }
+            return properties;
+        }
+
+        @Override
+        Object bind(INIDictionary dictionary, String section) {
+            Object[] values = read(dictionary, section);
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+                Integer index = indexes.get(method);
+                if (index != null) {
+                    Object value = values[index];
+                    return value != DEFAULT_METHOD ? value : InvocationHandler.invokeDefault(proxy, method);
+                }
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return toString(values);
+                }
+            });
+        }
+
+        private String toString(Object[] values) {
+            StringBuilder text = new StringBuilder(type.getSimpleName()).append('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) text.append(", ");
+                text.append(properties[i].name).append('=').append(values[i] != DEFAULT_METHOD ? values[i] : "<default>");
+            }
+            return text.append(']').toString();
+        }
+    }
+
+    // One bound property: which entry it reads, how to convert it, and what to use instead.
+    private static final class Property {
+        final String name;
+        final String key;
+        final int kind;
+        final Map<String, Object> constants;
+        final Object fallback;
+
+        Property(Class<?> owner, String name, Class<?> type, AnnotatedElement annotations, boolean defaultMethod) {
+            Key key = annotations.getAnnotation(Key.class);
+            Default fallback = annotations.getAnnotation(Default.class);
+            this.name = name;
+            this.key = key != null ? key.value() : name;
+            this.kind = kindOf(owner, name, type);
+            this.constants = kind == ENUM ? constantsOf(type) : null;
+            if (fallback != null) {
+                INIKeyTable.Entry text = new INIKeyTable.Entry(this.key, 0);
+                text.setValue(fallback.value());
+                this.fallback = convert(text, null);
+                if (this.fallback == null) {
+                    throw new IllegalArgumentException("Invalid default \"" + fallback.value() + "\" for "
+                            + owner.getName() + "." + name);
+                }
+            } else if (defaultMethod) {
+                this.fallback = DEFAULT_METHOD;
+            } else if (type.isPrimitive()) {
+                this.fallback = kind == INT ? (Object) 0 : kind == LONG ? (Object) 0L : kind == DOUBLE ? (Object) 0.0 : false;
+            } else {
+                this.fallback = null;
+            }
+        }
+
+        // Reads the property's entry; name holds the section name followed by ':'.
+        Object read(INIDictionary dictionary, StringBuilder name) {
+            INIKeyTable.Entry entry = dictionary.entry(name.append(key));
+            return entry != null && entry.value() != null ? convert(entry, fallback) : fallback;
+        }
+
+        private Object convert(INIKeyTable.Entry entry, Object invalid) {
+            // An invalid value yields the default passed in, so a second default tells a genuine
+            // zero or false apart from an invalid value. The entry caches both results.
+            switch (kind) {
+                case STRING:
+                    return entry.value();
+                case INT: {
+                    int value = entry.intValue(0);
+                    return value != 0 || entry.intValue(1) == 0 ? (Object) value : invalid;
+                }
+                case LONG: {
+                    long value = entry.longValue(0);
+                    return value != 0 || entry.longValue(1) == 0 ? (Object) value : invalid;
+                }
+                case DOUBLE: {
+                    double value = entry.doubleValue(0);
+                    return value != 0 || entry.doubleValue(1) == 0 ? (Object) value : invalid;
+                }
+                case BOOLEAN: {
+                    boolean value = entry.booleanValue(false);
+                    return value || !entry.booleanValue(true) ? (Object) value : invalid;
+                }
+                default: {
+                    Object constant = constants.get(entry.value().trim().toLowerCase());
+                    return constant != null ? constant : invalid;
+                }
+            }
+        }
+
+        private static int kindOf(Class<?> owner, String name, Class<?> type) {
+            if (type == String.class) return STRING;
+            if (type == int.class || type == Integer.class) return INT;
+            if (type == long.class || type == Long.class) return LONG;
+            if (type == double.class || type == Double.class) return DOUBLE;
+            if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+            if (type.isEnum()) return ENUM;
+            throw new IllegalArgumentException("Cannot bind " + owner.getName() + "." + name + " of type "
+                    + type.getName());
+        }
+
+        private static Map<String, Object> constantsOf(Class<?> type) {
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name().toLowerCase(), constant);
+            }
+            return constants;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads many INI files concurrently, each into its own {@link INIParser}.
+ *
+ * <p>
+ * Files are read by a pool of at most {@code maxConcurrency} threads, so the number of files
+ * being read at the same time stays bounded however many files are requested. Every file is
+ * read whole and scanned as UTF-8, which for small files is cheaper than both the line-by-line
+ * {@link INIParser#load(String)} and mapping the file. A file that cannot be read or loaded does
+ * not abort the batch: its error is recorded in the {@link Result} and the other files are still
+ * loaded.
+ * Syntax errors are reported to the error callback, as with {@link INIParser#load(String)}.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIBulkLoader.Result result = INIBulkLoader.loadDirectory(Paths.get("tenants"), 32).join();
+ * for (Map.Entry<Path, IOException> failure : result.getErrors().entrySet()) {
+ *     System.err.println("Skipping " + failure.getKey() + ": " + failure.getValue());
+ * }
+ * INIParser acme = result.getParsers().get(Paths.get("tenants", "acme.ini"));
+ * }</pre>
+ */
+public final class INIBulkLoader {
+
+    private INIBulkLoader() {
+    }
+
+    /**
+     * The outcome of a bulk load.
+     */
+    public static final class Result {
+
+        private final Map<Path, INIParser> parsers;
+        private final Map<Path, IOException> errors;
+
+        private Result(Map<Path, INIParser> parsers, Map<Path, IOException> errors) {
+            this.parsers = Collections.unmodifiableMap(parsers);
+            this.errors = Collections.unmodifiableMap(errors);
+        }
+
+        /**
+         * Returns the parsers of the files that were loaded, in the order the files were given.
+         *
+         * @return an unmodifiable map from each loaded file to its parser
+         */
+        public Map<Path, INIParser> getParsers() {
+            return parsers;
+        }
+
+        /**
+         * Returns the errors of the files that could not be read, in the order the files were given.
+         * Other failures, such as an exception thrown by the parser factory, are wrapped in an
+         * {@code IOException} whose cause is the original exception.
+         *
+         * @return an unmodifiable map from each failed file to the reason it failed
+         */
+        public Map<Path, IOException> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Loads every file of a directory whose name ends with {@code .ini}.
+     *
+     * @param directory      the directory to load the files of; subdirectories are not searched
+     * @param maxConcurrency the maximum number of files read at the same time
+     * @return a future completed with the result once every file has been loaded or has failed
+     * @throws IOException              if the directory cannot be listed
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     */
+    public static CompletableFuture<Result> loadDirectory(Path directory, int maxConcurrency) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.ini")) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return loadAll(files, maxConcurrency);
+    }
+
+    /**
+     * Loads the given files, each into a new {@link INIParser#INIParser() INIParser}.
+     *
+     * @param files          the files to load
+     * @param maxConcurrency the maximum number of files read at the same time
+     * @return a future completed with the result once every file has been loaded or has failed
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     * @see #loadAll(Collection, int, Supplier)
+     */
+    public static CompletableFuture<Result> loadAll(Collection<Path> files, int maxConcurrency) {
+        return loadAll(files, maxConcurrency, INIParser::new);
+    }
+
+    /**
+     * Loads the given files, each into a parser created by {@code factory}, for example
+     * {@code () -> new INIParser(true)} for parsers in concurrent mode.
+     *
+     * <p>
+     * The returned future never completes exceptionally because of a file: files that cannot be
+     * read or loaded are listed in {@link Result#getErrors()}. A file given more than once is loaded once.
+     *
+     * @param files          the files to load
+     * @param maxConcurrency the maximum number of files read at the same time
+     * @param factory        creates the parser of each file
+     * @return a future completed with the result once every file has been loaded or has failed
+     * @throws IllegalArgumentException if {@code maxConcurrency} is not positive
+     */
+    public static CompletableFuture<Result> loadAll(Collection<Path> files, int maxConcurrency,
+            Supplier<INIParser> factory) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency must be positive");
+        Path[] paths = new LinkedHashSet<>(files).toArray(new Path[0]);
+        if (paths.length == 0) {
+            return CompletableFuture.completedFuture(new Result(new LinkedHashMap<>(), new LinkedHashMap<>()));
+        }
+
+        INIParser[] parsers = new INIParser[paths.length];
+        IOException[] errors = new IOException[paths.length];
+        ThreadPoolExecutor pool = newPool(Math.min(maxConcurrency, paths.length));
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            int index = i;
+            tasks[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    INIParser parser = factory.get();
+                    parser.loadBytes(Files.readAllBytes(paths[index]));
+                    parsers[index] = parser;
+                } catch (IOException e) {
+                    errors[index] = e;
+                } catch (UncheckedIOException e) {
+                    errors[index] = e.getCause();
+                } catch (RuntimeException e) {
+                    // A failing factory or parser is recorded for this file, like a read error.
+                    errors[index] = new IOException("Cannot load " + paths[index] + ": " + e, e);
+                }
+            }, pool);
+        }
+        pool.shutdown();
+
+        // allOf() orders every task's writes to the arrays before the result is assembled.
+        return CompletableFuture.allOf(tasks).thenApply(done -> {
+            Map<Path, INIParser> loaded = new LinkedHashMap<>();
+            Map<Path, IOException> failed = new LinkedHashMap<>();
+            for (int i = 0; i < paths.length; i++) {
+                if (parsers[i] != null) loaded.put(paths[i], parsers[i]);
+                else if (errors[i] != null) failed.put(paths[i], errors[i]);
+            }
+            return new Result(loaded, failed);
+        });
+    }
+
+    private static ThreadPoolExecutor newPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "ini-bulk-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,161 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level scanner for UTF-8 encoded INI content.
+ *
+ * <p>
+ * The scanner walks a {@link ByteBuffer} (typically a memory-mapped file) line by line and
+ * recognizes section headers, comments, {@code key = value} pairs and quoted values directly on
+ * the bytes. Only the final section names, keys and values are decoded into Strings, which are
+ * then handed to a {@link Sink}.
+ *
+ * <p>
+ * Line splitting, trimming, lowercasing and quote handling follow
+ * {@link INIParser#loadFromReader(java.io.BufferedReader)} exactly, so a scan produces the same
+ * entries as the reader-based loader for the same input.
+ */
+final class INIByteScanner {
+
+    /**
+     * Receives the items recognized by the scanner, in source order.
+     */
+    interface Sink {
+        /**
+         * Called for every section header. Malformed headers report an error and then
+         * reset the section to the empty string, matching the reader-based loader.
+         *
+         * @param name the trimmed, lowercased section name
+         */
+        void section(String name);
+
+        /**
+         * Called for every well-formed key-value pair.
+         *
+         * @param key   the trimmed, lowercased key without its section prefix
+         * @param value the trimmed value with surrounding quotes removed
+         */
+        void keyValue(String key, String value);
+
+        /**
+         * Called before {@link #section} and {@link #keyValue} with the position of the line in
+         * the buffer. Does nothing by default.
+         *
+         * @param start      the index of the first byte of the line
+         * @param end        the index one past the last byte of the line, before its terminator
+         * @param valueStart the index of the first byte of the value as written, including any
+         *                   quotes, or -1 for a section header
+         * @param valueEnd   the index one past the last byte of the value as written, or -1
+         */
+        default void line(int start, int end, int valueStart, int valueEnd) {
+        }
+
+        /**
+         * Called for every syntax error.
+         *
+         * @param message the error description
+         */
+        void error(String message);
+    }
+
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Scans the lines of {@code buf} between {@code from} and {@code to}.
+     *
+     * @param buf  the buffer to scan; its position and limit are not modified
+     * @param from the index of the first byte to scan
+     * @param to   the index one past the last byte to scan
+     * @param last {@code true} if the range ends at the end of the input, so that a trailing line
+     *             without a terminator is complete
+     * @param sink the receiver of the recognized items
+     * @return the index one past the last consumed byte; when {@code last} is {@code false} this is
+     *         the start of the trailing incomplete line, if any
+     */
+    int scan(ByteBuffer buf, int from, int to, boolean last, Sink sink) {
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && buf.get(end) != '\n' && buf.get(end) != '\r') end++;
+            if (end == to && !last) return start;
+
+            line(buf, start, end, sink);
+
+            if (end < to && buf.get(end) == '\r' && end + 1 < to && buf.get(end + 1) == '\n') end++;
+            start = end + 1;
+        }
+        return to;
+    }
+
+    private void line(ByteBuffer buf, int lineStart, int lineEnd, Sink sink) {
+        int start = lineStart, end = lineEnd;
+        while (start < end && isSpace(buf.get(start))) start++;
+        while (end > start && isSpace(buf.get(end - 1))) end--;
+        if (start == end) return;
+
+        byte first = buf.get(start);
+        if (first == '#' || first == ';') return;
+
+        if (first == '[') {
+            int close = indexOf(buf, start, end, (byte) ']');
+            if (close == -1) {
+                sink.error("Syntax error: malformed section header.");
+                sink.section("");
+                return;
+            }
+            sink.line(lineStart, lineEnd, -1, -1);
+            sink.section(decodeTrimmed(buf, start + 1, close).toLowerCase());
+            return;
+        }
+
+        int eq = indexOf(buf, start, end, (byte) '=');
+        if (eq == -1) {
+            sink.error("Syntax error: malformed key-value pair.");
+            return;
+        }
+        String key = decodeTrimmed(buf, start, eq).toLowerCase();
+
+        int valueStart = eq + 1;
+        while (valueStart < end && isSpace(buf.get(valueStart))) valueStart++;
+        sink.line(lineStart, lineEnd, valueStart, end);
+        if (end - valueStart >= 2) {
+            byte open = buf.get(valueStart);
+            if ((open == '"' || open == '\'') && buf.get(end - 1) == open) {
+                valueStart++;
+                end--;
+            }
+        }
+        sink.keyValue(key, decode(buf, valueStart, end));
+    }
+
+    private String decodeTrimmed(ByteBuffer buf, int start, int end) {
+        while (start < end && isSpace(buf.get(start))) start++;
+        while (end > start && isSpace(buf.get(end - 1))) end--;
+        return decode(buf, start, end);
+    }
+
+    private String decode(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        if (length == 0) return "";
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buf.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(ByteBuffer buf, int start, int end, byte target) {
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == target) return i;
+        }
+        return -1;
+    }
+
+    // Same set of characters as String.trim(); bytes >= 0x80 belong to multi-byte sequences.
+    private static boolean isSpace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,291 @@
+import java.util.*;
+
+/**
+ * The entries of an {@link INIParser} together with an index of their sections.
+ *
+ * <p>
+ * A key belongs to the section named by its text up to the first {@code ':'}, or to the section
+ * named by the whole key if it contains no {@code ':'}. The index is kept up to date by
+ * {@link #put} and {@link #remove}, and lists sections in the order they first received a key.
+ * A section disappears from the index when its last key is removed.
+ */
+final class INIDictionary {
+
+    private static final class Section {
+        final String name;
+        // The section's entries by key, in insertion order.
+        final LinkedHashMap<String, INIKeyTable.Entry> keys;
+        int position;
+
+        Section(String name, int position) {
+            this.name = name;
+            this.keys = new LinkedHashMap<>();
+            this.position = position;
+        }
+
+        // Copies other, pointing at the corresponding entries of the copied table.
+        Section(Section other, INIKeyTable entries) {
+            this.name = other.name;
+            this.keys = new LinkedHashMap<>(other.keys.size() * 2);
+            for (INIKeyTable.Entry entry : other.keys.values()) {
+                keys.put(entry.key, entries.find(entry.key, entry.hash));
+            }
+            this.position = other.position;
+        }
+    }
+
+    private final INIKeyTable entries;
+    private final Map<String, String> view;
+    private final Map<String, Section> sections;
+    private final List<Section> order;
+
+    // Incremented whenever an entry is added or removed, so handles know to look keys up again.
+    private int structureVersion;
+
+    // Sorted keys as of some structure version; rebuilt lazily when that version is outdated.
+    private INIKeyIndex keyIndex;
+
+    INIDictionary() {
+        this.entries = new INIKeyTable();
+        this.view = new View();
+        this.sections = new HashMap<>();
+        this.order = new ArrayList<>();
+    }
+
+    private INIDictionary(INIDictionary other) {
+        this.entries = other.entries.copy();
+        this.view = new View();
+        this.sections = new HashMap<>(other.sections.size() * 2);
+        this.order = new ArrayList<>(other.order.size());
+        for (Section section : other.order) {
+            Section copy = new Section(section, entries);
+            sections.put(copy.name, copy);
+            order.add(copy);
+        }
+    }
+
+    /**
+     * Returns an independent copy of this dictionary and its section index.
+     */
+    INIDictionary copy() {
+        return new INIDictionary(this);
+    }
+
+    /**
+     * Returns an unmodifiable live view of the entries. Its lookups ignore case like the
+     * dictionary's own.
+     */
+    Map<String, String> asMap() {
+        return view;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int structureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * Returns the entry for {@code key}, whose value changes in place until the entry is removed,
+     * or {@code null} if there is none.
+     */
+    INIKeyTable.Entry entry(CharSequence key) {
+        return entries.find(key);
+    }
+
+    /**
+     * Like {@link #entry(CharSequence)}, for a key whose {@link INIKeyTable#hash} is known.
+     */
+    INIKeyTable.Entry entry(CharSequence key, int hash) {
+        return entries.find(key, hash);
+    }
+
+    /**
+     * Returns an iterator over the entries, in no particular order.
+     */
+    Iterator<INIKeyTable.Entry> iterator() {
+        return entries.iterator();
+    }
+
+    String get(CharSequence key) {
+        INIKeyTable.Entry entry = entries.find(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    String getOrDefault(CharSequence key, String defaultValue) {
+        INIKeyTable.Entry entry = entries.find(key);
+        return entry != null ? entry.value() : defaultValue;
+    }
+
+    boolean containsKey(CharSequence key) {
+        return entries.find(key) != null;
+    }
+
+    /**
+     * Sets the value of {@code key}, adding the entry if needed, and returns the entry.
+     */
+    INIKeyTable.Entry put(CharSequence key, String value) {
+        int before = entries.size();
+        INIKeyTable.Entry entry = entries.insert(key);
+        entry.setValue(value);
+        if (entries.size() == before) return entry;
+        structureVersion++;
+
+        String name = sectionOf(entry.key);
+        Section section = sections.get(name);
+        if (section == null) {
+            section = new Section(name, order.size());
+            sections.put(name, section);
+            order.add(section);
+        }
+        section.keys.put(entry.key, entry);
+        return entry;
+    }
+
+    /**
+     * Removes the entry for {@code key} and returns it, or returns {@code null} if there is none.
+     */
+    INIKeyTable.Entry remove(CharSequence key) {
+        INIKeyTable.Entry entry = entries.remove(key);
+        if (entry == null) return null;
+        structureVersion++;
+
+        Section section = sections.get(sectionOf(entry.key));
+        section.keys.remove(entry.key);
+        if (section.keys.isEmpty()) {
+            sections.remove(section.name);
+            order.remove(section.position);
+            for (int i = section.position; i < order.size(); i++) {
+                order.get(i).position = i;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the sorted index of the current keys, building it if entries were added or removed
+     * since it was last built.
+     */
+    INIKeyIndex keyIndex() {
+        INIKeyIndex index = keyIndex;
+        if (index == null || index.structureVersion != structureVersion) {
+            index = new INIKeyIndex(structureVersion, entries.iterator(), entries.size());
+            keyIndex = index;
+        }
+        return index;
+    }
+
+    int sectionCount() {
+        return order.size();
+    }
+
+    /**
+     * Returns the name of the section at {@code index}, or {@code null} if out of bounds.
+     */
+    String sectionName(int index) {
+        return index >= 0 && index < order.size() ? order.get(index).name : null;
+    }
+
+    /**
+     * Returns the keys of {@code name} in insertion order, or an empty set if there is no such
+     * section.
+     */
+    Set<String> sectionKeys(String name) {
+        Section section = sections.get(name);
+        return section != null ? Collections.unmodifiableSet(section.keys.keySet()) : Collections.emptySet();
+    }
+
+    /**
+     * Returns an estimate of the heap retained by this dictionary: per entry, its key and value
+     * strings, the entry object, its table slot and its place in the section index.
+     */
+    long retainedBytes() {
+        long bytes = 256 + 64L * order.size();
+        for (Iterator<INIKeyTable.Entry> it = entries.iterator(); it.hasNext(); ) {
+            INIKeyTable.Entry entry = it.next();
+            String value = entry.value();
+            bytes += 200 + 2L * entry.key.length() + (value != null ? 2L * value.length() : 0);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the entries of {@code name} in insertion order, or an empty collection if there is
+     * no such section.
+     */
+    Collection<INIKeyTable.Entry> sectionEntries(String name) {
+        Section section = sections.get(name);
+        return section != null ? Collections.unmodifiableCollection(section.keys.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the keys that were added, removed or given a different value between
+     * {@code before} and {@code after}.
+     */
+    static Set<String> changedKeys(INIDictionary before, INIDictionary after) {
+        Set<String> changed = new HashSet<>();
+        for (Iterator<INIKeyTable.Entry> it = after.entries.iterator(); it.hasNext(); ) {
+            INIKeyTable.Entry entry = it.next();
+            INIKeyTable.Entry old = before.entries.find(entry.key);
+            if (old == null || !Objects.equals(old.value(), entry.value())) changed.add(entry.key);
+        }
+        for (Iterator<INIKeyTable.Entry> it = before.entries.iterator(); it.hasNext(); ) {
+            String key = it.next().key;
+            if (after.entries.find(key) == null) changed.add(key);
+        }
+        return changed;
+    }
+
+    static String sectionOf(String key) {
+        int colon = key.indexOf(':');
+        return colon == -1 ? key : key.substring(0, colon);
+    }
+
+    private final class View extends AbstractMap<String, String> {
+        private final Set<Map.Entry<String, String>> entrySet = new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                Iterator<INIKeyTable.Entry> it = entries.iterator();
+                return new Iterator<Map.Entry<String, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        INIKeyTable.Entry entry = it.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(entry.key, entry.value());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof CharSequence && INIDictionary.this.containsKey((CharSequence) key);
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof CharSequence ? INIDictionary.this.get((CharSequence) key) : null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Releases the memory of direct buffers without waiting for the garbage collector.
+ *
+ * <p>
+ * Java 17 offers no public way to free a direct {@link ByteBuffer}: its memory is returned when
+ * the buffer becomes unreachable and is collected, which for a buffer that lives long enough to
+ * be promoted may take until a full collection. This class is the only user of
+ * {@code sun.misc.Unsafe} in this package, for its {@code invokeCleaner} method, which frees a
+ * direct buffer at once. It is looked up reflectively, so if the running JDK does not provide it,
+ * or does not allow access to it, {@link #free} does nothing and the memory is left to the
+ * garbage collector as usual.
+ *
+ * <p>
+ * A freed buffer must not be used again, nor any buffer sliced or duplicated from it: its memory
+ * may already belong to another allocation, and accessing it can crash the JVM.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is safe for concurrent use, but a buffer must only be
+ * freed once no other thread can still access it.
+ */
+final class INIDirectMemory {
+
+    // Unsafe.theUnsafe and Unsafe.invokeCleaner(ByteBuffer); null if unavailable.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Direct buffers are then released by the garbage collector.
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private INIDirectMemory() {
+    }
+
+    /**
+     * Frees the memory of {@code buffer} now if it is a direct buffer allocated by
+     * {@link ByteBuffer#allocateDirect}, and if the JDK allows it. Heap buffers are ignored.
+     *
+     * @param buffer a buffer that is no longer used, and was not sliced or duplicated
+     */
+    static void free(ByteBuffer buffer) {
+        if (!buffer.isDirect() || INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // Left to the garbage collector.
+        }
+    }
+}
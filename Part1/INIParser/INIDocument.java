@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.*;
+
+/**
+ * An INI file opened for editing in place, keeping its comments, ordering and formatting.
+ *
+ * <p>
+ * Opening a document scans the file once and remembers where every entry and section sits in
+ * it, without keeping the values. {@link #set} and {@link #unset} only record changes, and
+ * {@link #save()} applies them all to the file as byte patches:
+ * <ul>
+ * <li>A value is replaced where it stands, so only its bytes change. The key, the spacing
+ * around {@code =} and the surrounding lines are left untouched.</li>
+ * <li>A new key is inserted after the last line of its section, and a new section is appended
+ * to the end of the file.</li>
+ * <li>A removed key loses its line, and every earlier duplicate of it as well.</li>
+ * </ul>
+ * If every change replaces a value with one that fits on its line, the new bytes are written
+ * at their positions and the rest of the file is not touched; a shorter value is padded with
+ * trailing spaces, which loading ignores. Otherwise the file is copied to a temporary file with
+ * the patches spliced in, unchanged ranges being transferred by the operating system, and the
+ * copy atomically replaces the file.
+ *
+ * <p>
+ * Keys are named {@code section:key} and matched ignoring case, as in {@link INIParser}. New
+ * keys and sections are written with the case given to {@link #set}, and new lines use the line
+ * terminator of the file's first line. The file must be UTF-8 encoded.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is not thread-safe.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIDocument document = INIDocument.open("config.ini");
+ * document.set("Pizza:Cheese", "TRUE");
+ * document.unset("pizza:capres");
+ * document.save(); // comments and all other lines stay as they were
+ * }</pre>
+ */
+public final class INIDocument {
+
+    // Where a line sits in the file, and for an entry, its value as written.
+    private static final class Line {
+        final long start;
+        final long end;        // before the line terminator
+        final long next;       // start of the following line; equals end on an unterminated last line
+        final long valueStart; // -1 for a section header
+        long valueEnd;
+        Line previous;         // an earlier line defining the same key
+
+        Line(long start, long end, long next, long valueStart, long valueEnd) {
+            this.start = start;
+            this.end = end;
+            this.next = next;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+    }
+
+    // Replaces length bytes at offset with bytes; a pure insertion has length 0.
+    private static final class Patch {
+        final long offset;
+        final long length;
+        byte[] bytes;
+        final Line value; // the line whose value is replaced, null for other patches
+
+        Patch(long offset, long length, byte[] bytes, Line value) {
+            this.offset = offset;
+            this.length = length;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    private final Path path;
+    private final Map<String, Line> entries = new HashMap<>();
+    private final Map<String, Line> sectionEnds = new HashMap<>();
+    private String newline;
+    private long size;
+    private long modified;
+
+    // Pending changes by lowercase key, in the order they were made; a null value removes the key.
+    private final Map<String, String> changes = new LinkedHashMap<>();
+    private final Map<String, String> spellings = new HashMap<>();
+
+    private INIDocument(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens an INI file for editing.
+     *
+     * @param fileName the name of the INI file
+     * @return the document
+     * @throws IOException if the file cannot be read or contains a line too long to be mapped
+     */
+    public static INIDocument open(String fileName) throws IOException {
+        INIDocument document = new INIDocument(Paths.get(fileName).toAbsolutePath());
+        document.scan();
+        return document;
+    }
+
+    /**
+     * Sets or updates an entry. The change is written by {@link #save()}.
+     *
+     * @param entry the entry key, named {@code section:key}
+     * @param value the value to associate with the entry
+     * @throws IllegalArgumentException if the entry or value cannot be written as an INI line,
+     *                                  e.g. because it contains a line break or the entry has no
+     *                                  section
+     */
+    public void set(String entry, String value) {
+        int colon = entry.indexOf(':');
+        if (colon == -1 || colon > 0 && !INIWriter.representable(entry.substring(0, colon), 0, false)
+                || !INIWriter.representable(entry, colon + 1, true)) {
+            throw new IllegalArgumentException("Cannot write entry as an INI line: " + entry);
+        }
+        if (value == null || INIWriter.hasLineBreak(value)) {
+            throw new IllegalArgumentException("Cannot write value as an INI line: " + value);
+        }
+        String key = entry.toLowerCase();
+        changes.put(key, value);
+        spellings.put(key, entry);
+    }
+
+    /**
+     * Removes an entry if it exists. The change is written by {@link #save()}.
+     *
+     * @param entry the entry to remove
+     */
+    public void unset(String entry) {
+        changes.put(entry.toLowerCase(), null);
+    }
+
+    /**
+     * Checks if the file defines a specific entry, ignoring changes that are not saved yet.
+     *
+     * @param entry the entry to search for
+     * @return {@code true} if the entry exists in the file, {@code false} otherwise
+     */
+    public boolean findEntry(String entry) {
+        return entries.containsKey(entry.toLowerCase());
+    }
+
+    /**
+     * Writes the pending changes to the file.
+     *
+     * @return {@code true} if the changes were written in place, {@code false} if the file was
+     *         rewritten, or if there was nothing to write
+     * @throws IOException if the file cannot be written, or was modified since it was opened or
+     *                     last saved; the file is then unchanged
+     */
+    public boolean save() throws IOException {
+        if (changes.isEmpty()) return false;
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.size() != size || attributes.lastModifiedTime().toMillis() != modified) {
+            throw new IOException(path + " was modified since it was opened");
+        }
+
+        List<Patch> patches = new ArrayList<>();
+        Map<Long, Patch> insertions = new HashMap<>();
+        Map<String, StringBuilder> newSections = new LinkedHashMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String key = change.getKey();
+            String value = change.getValue();
+            Line line = entries.get(key);
+            if (value == null) {
+                for (; line != null; line = line.previous) {
+                    patches.add(new Patch(line.start, line.next - line.start, new byte[0], null));
+                }
+            } else if (line != null) {
+                patches.add(new Patch(line.valueStart, line.valueEnd - line.valueStart, encode(quoted(value)), line));
+            } else {
+                String spelling = spellings.get(key);
+                int colon = spelling.indexOf(':');
+                String text = spelling.substring(colon + 1) + " = " + quoted(value) + newline;
+                Line last = sectionEnds.get(key.substring(0, colon));
+                if (last == null && colon > 0) {
+                    newSections.computeIfAbsent(key.substring(0, colon),
+                            section -> new StringBuilder("[").append(spelling, 0, colon).append(']').append(newline))
+                            .append(text);
+                    continue;
+                }
+                // After the section's last line, or at the top for the unnamed section.
+                long offset = last != null ? last.next : 0;
+                if (last != null && last.next == last.end) text = newline + text;
+                Patch insertion = insertions.get(offset);
+                if (insertion == null) {
+                    insertion = new Patch(offset, 0, new byte[0], null);
+                    insertions.put(offset, insertion);
+                    patches.add(insertion);
+                }
+                insertion.bytes = concat(insertion.bytes, encode(text));
+            }
+        }
+        if (!newSections.isEmpty()) {
+            StringBuilder text = new StringBuilder();
+            if (size > 0 && !endsWithNewline()) text.append(newline);
+            for (StringBuilder section : newSections.values()) {
+                if (size > 0 || text.length() > 0) text.append(newline);
+                text.append(section);
+            }
+            patches.add(new Patch(size, 0, encode(text.toString()), null));
+        }
+
+        boolean inPlace = true;
+        for (Patch patch : patches) {
+            if (patch.value == null || patch.bytes.length > patch.value.end - patch.value.valueStart) {
+                inPlace = false;
+                break;
+            }
+        }
+        if (inPlace) {
+            writeInPlace(patches);
+        } else {
+            rewrite(patches);
+        }
+        changes.clear();
+        spellings.clear();
+        return inPlace;
+    }
+
+    // Overwrites each value, padding with spaces up to the length of the old value.
+    private void writeInPlace(List<Patch> patches) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            for (Patch patch : patches) {
+                int length = (int) Math.max(patch.length, patch.bytes.length);
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                buffer.put(patch.bytes);
+                while (buffer.hasRemaining()) buffer.put((byte) ' ');
+                buffer.flip();
+                long position = patch.offset;
+                while (buffer.hasRemaining()) position += channel.write(buffer, position);
+                patch.value.valueEnd = patch.offset + patch.bytes.length;
+            }
+            channel.force(false);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        size = attributes.size();
+        modified = attributes.lastModifiedTime().toMillis();
+    }
+
+    // Copies the file with the patches spliced in, replaces it, and scans the result.
+    private void rewrite(List<Patch> patches) throws IOException {
+        // At the same offset, a value comes first, since an insertion after a last line with an
+        // empty value at the end of the file shares the value's offset. Insertions come next, so
+        // they land before a removed line.
+        patches.sort(Comparator.<Patch>comparingLong(patch -> patch.offset)
+                .thenComparing(patch -> patch.value == null)
+                .thenComparingLong(patch -> patch.length));
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                for (Patch patch : patches) {
+                    transfer(in, position, patch.offset - position, out);
+                    ByteBuffer bytes = ByteBuffer.wrap(patch.bytes);
+                    while (bytes.hasRemaining()) out.write(bytes);
+                    position = Math.max(position, patch.offset + patch.length);
+                }
+                transfer(in, position, size - position, out);
+                out.force(false);
+            }
+            replace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        scan();
+    }
+
+    /**
+     * Moves {@code temp} over {@code target}, atomically if the file system supports it. A
+     * temporary file is created readable by its owner only, so it is first given the permissions
+     * of {@code target}, and its owner and group where the user is allowed to set them.
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        PosixFileAttributeView original = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (original != null && Files.exists(target)) {
+            PosixFileAttributes attributes = original.readAttributes();
+            PosixFileAttributeView copy = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+            copy.setPermissions(attributes.permissions());
+            try {
+                copy.setOwner(attributes.owner());
+                copy.setGroup(attributes.group());
+            } catch (IOException | SecurityException e) {
+                // Changing them needs privileges; the file keeps the user's.
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private void scan() throws IOException {
+        entries.clear();
+        sectionEnds.clear();
+        newline = null;
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        size = attributes.size();
+        modified = attributes.lastModifiedTime().toMillis();
+
+        INIByteScanner scanner = new INIByteScanner();
+        long[] base = {0};
+        MappedByteBuffer[] window = new MappedByteBuffer[1];
+        int[] limit = new int[1];
+        INIByteScanner.Sink sink = new INIByteScanner.Sink() {
+            private String section = "";
+            private Line line;
+
+            @Override
+            public void line(int start, int end, int valueStart, int valueEnd) {
+                int next = end;
+                if (next < limit[0] && window[0].get(next) == '\r') next++;
+                if (next < limit[0] && window[0].get(next) == '\n') next++;
+                if (newline == null && next > end) newline = next - end == 2 ? "\r\n" : end < limit[0] && window[0].get(end) == '\r' ? "\r" : "\n";
+                long offset = base[0];
+                line = new Line(offset + start, offset + end, offset + next,
+                        valueStart == -1 ? -1 : offset + valueStart, valueEnd == -1 ? -1 : offset + valueEnd);
+            }
+
+            @Override
+            public void section(String name) {
+                section = name;
+                if (line != null) sectionEnds.put(name, line);
+                line = null;
+            }
+
+            @Override
+            public void keyValue(String key, String value) {
+                String name = section + ":" + key;
+                line.previous = entries.get(name);
+                entries.put(name, line);
+                sectionEnds.put(section, line);
+                line = null;
+            }
+
+            @Override
+            public void error(String message) {
+                INIParser.errorCallback().println(message);
+            }
+        };
+        INIParser.scanMapped(path.toString(), (buffer, length, last) -> {
+            window[0] = buffer;
+            limit[0] = length;
+            int consumed = scanner.scan(buffer, 0, length, last, sink);
+            base[0] += consumed;
+            return consumed;
+        });
+        if (newline == null) newline = System.lineSeparator();
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n' || last.get(0) == '\r';
+        }
+    }
+
+    private static String quoted(String value) {
+        return INIWriter.needsQuotes(value) ? '"' + value + '"' : value;
+    }
+
+    private static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Regression checks for {@link INIDocument}.
+ *
+ * <p>
+ * Each check writes an INI file, edits it through an {@code INIDocument}, and compares what
+ * {@link INIParser} loads from the saved file with the entries the edits should have left. Besides
+ * fixed cases, a number of seeded random edits are applied to files with and without a trailing
+ * newline. Every failure is printed, and the exit status is 1 if there are any.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>
+ * java INIDocumentChecks
+ * java INIDocumentChecks --seeds 3000
+ * </pre>
+ */
+public class INIDocumentChecks {
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        int seeds = args.length == 2 && args[0].equals("--seeds") ? Integer.parseInt(args[1]) : 500;
+
+        // A key inserted after a last line with an empty value and no newline must not take
+        // the place of that value.
+        check("insertion after an empty value at the end of the file", "[a]\nk=",
+                document -> {
+                    document.set("a:dup", "v");
+                    document.set("a:k", "x");
+                },
+                Map.of("a:k", "x", "a:dup", "v"));
+        check("insertion after an empty value at the end of a line", "[a]\nk=\n",
+                document -> {
+                    document.set("a:dup", "v");
+                    document.set("a:k", "x");
+                },
+                Map.of("a:k", "x", "a:dup", "v"));
+        check("new section after a file without a newline", "[a]\nk=1",
+                document -> document.set("b:k", "2"),
+                Map.of("a:k", "1", "b:k", "2"));
+
+        for (int seed = 0; seed < seeds; seed++) fuzz(seed);
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private interface Edits {
+        void apply(INIDocument document);
+    }
+
+    private static void check(String name, String content, Edits edits, Map<String, String> expected)
+            throws IOException {
+        Path file = Files.createTempFile("ini-document", ".ini");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            INIDocument document = INIDocument.open(file.toString());
+            edits.apply(document);
+            document.save();
+            Map<String, String> actual = new INIParser().load(file.toString());
+            if (!actual.equals(expected)) {
+                failures++;
+                System.out.println("FAILED " + name + ": expected " + expected + ", got " + actual);
+                System.out.println(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Random sets and unsets over a few sections, some keys with empty values.
+    private static void fuzz(int seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        Map<String, String> expected = new HashMap<>();
+        int sections = 1 + random.nextInt(3);
+        for (int section = 0; section < sections; section++) {
+            content.append("[s").append(section).append("]\n");
+            int keys = random.nextInt(4);
+            for (int key = 0; key < keys; key++) {
+                String value = random.nextBoolean() ? "" : "v" + random.nextInt(100);
+                content.append('k').append(key).append('=').append(value).append('\n');
+                expected.put("s" + section + ":k" + key, value);
+            }
+        }
+        if (random.nextBoolean()) content.setLength(content.length() - 1);
+
+        List<String[]> edits = new ArrayList<>();
+        int count = 1 + random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            String key = "s" + random.nextInt(4) + ":k" + random.nextInt(6);
+            String value = random.nextInt(4) == 0 ? null : random.nextBoolean() ? "" : "w" + random.nextInt(1000);
+            edits.add(new String[] {key, value});
+            if (value == null) expected.remove(key);
+            else expected.put(key, value);
+        }
+        check("seed " + seed, content.toString(),
+                document -> {
+                    for (String[] edit : edits) {
+                        if (edit[1] == null) document.unset(edit[0]);
+                        else document.set(edit[0], edit[1]);
+                    }
+                },
+                expected);
+    }
+}
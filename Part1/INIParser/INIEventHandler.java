@@ -0,0 +1,73 @@
+/**
+ * Receives the contents of an INI file as a stream of events.
+ *
+ * <p>
+ * An {@code INIEventHandler} is passed to {@link INIParser#parse(java.io.Reader, INIEventHandler)},
+ * which calls it once for every meaningful line of the input, in order, without building a
+ * dictionary. This allows very large files to be filtered, validated or transformed in constant
+ * memory. All methods do nothing by default, so a handler only overrides the events it needs.
+ *
+ * <p>
+ * Every event carries the 1-based line number of the line it comes from, and the offset of the
+ * start of that line, counted in characters from the start of the input.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * // Print the entries of one section of a huge file
+ * INIParser.parse(new FileReader("huge.ini"), new INIEventHandler() {
+ *     @Override
+ *     public void keyValue(String section, String key, String value, long line, long offset) {
+ *         if (section.equals("wine")) System.out.println(key + " = " + value);
+ *     }
+ * });
+ * }</pre>
+ */
+public interface INIEventHandler {
+
+    /**
+     * Called for every section header. Keys that follow belong to this section.
+     *
+     * <p>
+     * After a malformed header, {@link #syntaxError} is called first and then this method with an
+     * empty name, because the keys that follow belong to the unnamed section.
+     *
+     * @param name   the trimmed, lowercased section name
+     * @param line   the line number of the header
+     * @param offset the character offset of the start of the line
+     */
+    default void section(String name, long line, long offset) {
+    }
+
+    /**
+     * Called for every well-formed {@code key = value} line.
+     *
+     * @param section the lowercased name of the section the key belongs to, empty before the
+     *                first section header
+     * @param key     the trimmed, lowercased key
+     * @param value   the trimmed value with surrounding quotes removed
+     * @param line    the line number of the entry
+     * @param offset  the character offset of the start of the line
+     */
+    default void keyValue(String section, String key, String value, long line, long offset) {
+    }
+
+    /**
+     * Called for every comment line, that is a line starting with {@code #} or {@code ;}.
+     *
+     * @param text   the trimmed line, including its comment marker
+     * @param line   the line number of the comment
+     * @param offset the character offset of the start of the line
+     */
+    default void comment(String text, long line, long offset) {
+    }
+
+    /**
+     * Called for every line that cannot be parsed. Parsing continues with the next line.
+     *
+     * @param message a description of the error
+     * @param line    the line number of the malformed line
+     * @param offset  the character offset of the start of the line
+     */
+    default void syntaxError(String message, long line, long offset) {
+    }
+}
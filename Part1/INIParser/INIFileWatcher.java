@@ -0,0 +1,101 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a single INI file for changes and runs a reload action after each burst of changes.
+ *
+ * <p>
+ * Instances are created by {@link INIParser#watch}. The watcher registers the file's directory
+ * with a {@link WatchService} and runs on its own daemon thread, so reloads never happen on the
+ * threads that query the parser. Creating, modifying or replacing the file starts a debounce
+ * period; the reload action runs once the file has stayed unchanged for that period.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> {@link #close()} may be called from any thread.
+ */
+public final class INIFileWatcher implements Closeable {
+
+    private final Path file;
+    private final long debounceNanos;
+    private final Runnable reload;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    INIFileWatcher(Path file, long debounceMillis, Runnable reload) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.file = absolute.getFileName();
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMillis));
+        this.reload = reload;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            absolute.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "INIFileWatcher-" + this.file);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        boolean changed = false;
+        long deadline = 0;
+        try {
+            while (!closed) {
+                WatchKey key;
+                if (changed) {
+                    long remaining = deadline - System.nanoTime();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (key == null) {
+                        changed = false;
+                        reload.run();
+                        continue;
+                    }
+                } else {
+                    key = watchService.take();
+                }
+
+                if (concernsFile(key)) {
+                    changed = true;
+                    deadline = System.nanoTime() + debounceNanos;
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed while waiting for events.
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.equals(event.context())) {
+                relevant = true;
+            }
+        }
+        return relevant;
+    }
+
+    /**
+     * Stops watching the file. A reload that is already running is allowed to complete.
+     *
+     * @throws IOException if the underlying watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+}
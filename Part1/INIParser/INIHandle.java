@@ -0,0 +1,135 @@
+/**
+ * A pre-resolved reference to one entry of an {@link INIParser}.
+ *
+ * <p>
+ * Handles are obtained from {@link INIParser#handle(String)} and are meant for entries that are
+ * read very frequently. A handle remembers where its entry lives, so a read normally costs a
+ * couple of field reads instead of hashing the entry's name. The handle notices when the parser's
+ * dictionary is replaced or entries are added or removed, and then resolves the name again, so it
+ * always reads the entry's current value.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> A handle is as thread-safe as its parser: in concurrent mode it
+ * may be read from any thread without synchronization.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIHandle year = parser.handle("wine:year");
+ * int y = year.getInt(-1);
+ * parser.setEntry("wine:year", "2001");
+ * y = year.getInt(-1); // 2001
+ * }</pre>
+ */
+public final class INIHandle {
+
+    // Where the key was found, valid while the dictionary and its structure version are unchanged.
+    private static final class Binding {
+        final INIDictionary dictionary;
+        final int structureVersion;
+        final INIKeyTable.Entry entry;
+
+        Binding(INIDictionary dictionary, int structureVersion, INIKeyTable.Entry entry) {
+            this.dictionary = dictionary;
+            this.structureVersion = structureVersion;
+            this.entry = entry;
+        }
+    }
+
+    private final INIParser parser;
+    private final String key;
+    private Binding binding;
+
+    INIHandle(INIParser parser, String key) {
+        this.parser = parser;
+        this.key = key;
+        resolve(parser.current());
+    }
+
+    /**
+     * Returns the name of the entry this handle refers to.
+     *
+     * @return the entry name, as passed to {@link INIParser#handle(String)}
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Checks if the entry currently exists.
+     *
+     * @return {@code true} if the entry exists, {@code false} otherwise
+     */
+    public boolean exists() {
+        return entry() != null;
+    }
+
+    /**
+     * Retrieves the current string value of the entry.
+     *
+     * @param defaultValue the default value if the entry does not exist
+     * @return the value of the entry, or {@code defaultValue} if it does not exist
+     */
+    public String getString(String defaultValue) {
+        INIKeyTable.Entry entry = entry();
+        return entry != null ? entry.value() : defaultValue;
+    }
+
+    /**
+     * Retrieves the current integer value of the entry.
+     *
+     * @param defaultValue the default integer value if the entry does not exist or cannot be parsed as an integer
+     * @return the integer value, or {@code defaultValue} if the entry is absent or invalid
+     */
+    public int getInt(int defaultValue) {
+        INIKeyTable.Entry entry = entry();
+        return entry != null ? entry.intValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the current long value of the entry.
+     *
+     * @param defaultValue the default long value if the entry does not exist or cannot be parsed as a long
+     * @return the long value, or {@code defaultValue} if the entry is absent or invalid
+     */
+    public long getLong(long defaultValue) {
+        INIKeyTable.Entry entry = entry();
+        return entry != null ? entry.longValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the current double value of the entry.
+     *
+     * @param defaultValue the default double value if the entry does not exist or cannot be parsed as a double
+     * @return the double value, or {@code defaultValue} if the entry is absent or invalid
+     */
+    public double getDouble(double defaultValue) {
+        INIKeyTable.Entry entry = entry();
+        return entry != null ? entry.doubleValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the current boolean value of the entry.
+     *
+     * @param defaultValue the default boolean value if the entry does not exist or cannot be parsed as a boolean
+     * @return the boolean value, or {@code defaultValue} if the entry is absent or invalid
+     */
+    public boolean getBoolean(boolean defaultValue) {
+        INIKeyTable.Entry entry = entry();
+        return entry != null ? entry.booleanValue(defaultValue) : defaultValue;
+    }
+
+    private INIKeyTable.Entry entry() {
+        INIDictionary current = parser.current();
+        Binding b = binding;
+        if (b.dictionary != current || b.structureVersion != current.structureVersion()) {
+            b = resolve(current);
+        }
+        return b.entry;
+    }
+
+    private Binding resolve(INIDictionary current) {
+        Binding b = new Binding(current, current.structureVersion(), current.entry(key));
+        binding = b;
+        return b;
+    }
+}
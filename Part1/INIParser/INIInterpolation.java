@@ -0,0 +1,173 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The references between the values of an {@link INIDictionary}, and the values with their
+ * references substituted, for {@link INIParser#getInterpolated}.
+ *
+ * <p>
+ * A value refers to another entry with {@code ${section:key}}, to an entry of its own section
+ * with {@code ${key}}, and to an environment variable with {@code ${env:NAME}}. References to
+ * missing entries or variables are left in the value as written.
+ *
+ * <p>
+ * The dependency graph is built from all values when the instance is created, and every value
+ * with references is then resolved depth-first, so each is substituted after the values it
+ * refers to, and cached. A reference back to a value still being resolved is a cycle: it is
+ * reported to the error callback, and the values on the cycle are left unsubstituted. When
+ * entries change, {@link #changed} updates their edges and discards the cached values of those
+ * entries and of everything that depends on them, directly or not; all other cached values are
+ * kept.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> Cached values are read without locking; resolving and
+ * changing are serialized on the instance.
+ */
+final class INIInterpolation {
+
+    private static final String ENV = "env:";
+
+    // The dictionary the graph describes, replaced by each change in concurrent mode.
+    private INIDictionary source;
+
+    // Entry references of each key with references, and the keys referring to each key.
+    private final Map<String, String[]> references = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+    private final Set<String> cyclic = new HashSet<>();
+
+    INIInterpolation(INIDictionary source) {
+        this.source = source;
+        for (Iterator<INIKeyTable.Entry> it = source.iterator(); it.hasNext(); ) {
+            INIKeyTable.Entry entry = it.next();
+            link(entry.key, entry.value());
+        }
+        synchronized (this) {
+            List<String> path = new ArrayList<>();
+            for (String key : references.keySet()) resolve(key, path);
+        }
+    }
+
+    /**
+     * Returns the value of {@code key}, a key as stored in the dictionary, with its references
+     * substituted, or {@code null} if the key does not exist.
+     */
+    String get(String key) {
+        String value = resolved.get(key);
+        if (value != null) return value;
+        synchronized (this) {
+            return resolve(key, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Takes note that {@code keys}, as stored in the dictionary, were set or removed, giving
+     * {@code now} as the dictionary holding their new values.
+     */
+    synchronized void changed(Collection<String> keys, INIDictionary now) {
+        source = now;
+        Deque<String> stale = new ArrayDeque<>();
+        for (String key : keys) {
+            unlink(key);
+            INIKeyTable.Entry entry = now.entry(key);
+            if (entry != null) link(key, entry.value());
+            stale.add(key);
+        }
+        Set<String> seen = new HashSet<>();
+        while (!stale.isEmpty()) {
+            String key = stale.poll();
+            if (!seen.add(key)) continue;
+            resolved.remove(key);
+            cyclic.remove(key);
+            Set<String> users = dependents.get(key);
+            if (users != null) stale.addAll(users);
+        }
+    }
+
+    // Resolves key depth-first; path holds the keys being resolved, to detect cycles.
+    private String resolve(String key, List<String> path) {
+        String value = resolved.get(key);
+        if (value != null) return value;
+        INIKeyTable.Entry entry = source.entry(key);
+        String raw = entry != null ? entry.value() : null;
+        if (raw == null || !references.containsKey(key)) return raw;
+        if (path.contains(key)) {
+            reportCycle(key, path);
+            return null;
+        }
+        path.add(key);
+        value = substitute(key, raw, path);
+        path.remove(path.size() - 1);
+        if (cyclic.contains(key)) value = raw;
+        resolved.put(key, value);
+        return value;
+    }
+
+    private String substitute(String key, String raw, List<String> path) {
+        StringBuilder value = new StringBuilder(raw.length() + 16);
+        int from = 0;
+        for (int start = raw.indexOf("${"); start != -1; start = raw.indexOf("${", from)) {
+            int end = raw.indexOf('}', start + 2);
+            if (end == -1) break;
+            value.append(raw, from, start);
+            String name = raw.substring(start + 2, end);
+            String replacement = name.regionMatches(true, 0, ENV, 0, ENV.length())
+                    ? System.getenv(name.substring(ENV.length()))
+                    : resolve(target(key, name), path);
+            value.append(replacement != null ? replacement : raw.substring(start, end + 1));
+            from = end + 1;
+        }
+        return value.append(raw, from, raw.length()).toString();
+    }
+
+    private void reportCycle(String key, List<String> path) {
+        StringBuilder cycle = new StringBuilder();
+        boolean on = false;
+        for (String member : path) {
+            on |= member.equals(key);
+            if (on) {
+                cyclic.add(member);
+                cycle.append(member).append(" -> ");
+            }
+        }
+        INIParser.errorCallback().println("Cyclic reference: " + cycle + key);
+    }
+
+    // Records the entry references of value as edges from key.
+    private void link(String key, String value) {
+        if (value == null || value.indexOf("${") == -1) return;
+        List<String> targets = new ArrayList<>(2);
+        for (int start = value.indexOf("${"); start != -1; start = value.indexOf("${", start + 2)) {
+            int end = value.indexOf('}', start + 2);
+            if (end == -1) break;
+            String name = value.substring(start + 2, end);
+            if (!name.regionMatches(true, 0, ENV, 0, ENV.length())) {
+                String target = target(key, name);
+                // Share the dictionary's copy of the name, so the graph holds no duplicates.
+                INIKeyTable.Entry entry = source.entry(target);
+                if (entry != null) target = entry.key;
+                targets.add(target);
+                dependents.computeIfAbsent(target, k -> new HashSet<>(4)).add(key);
+            }
+        }
+        references.put(key, targets.toArray(new String[0]));
+    }
+
+    private void unlink(String key) {
+        String[] targets = references.remove(key);
+        if (targets == null) return;
+        for (String target : targets) {
+            Set<String> users = dependents.get(target);
+            if (users != null && users.remove(key) && users.isEmpty()) dependents.remove(target);
+        }
+    }
+
+    // The stored form of the key a reference names: ${key} is relative to key's own section.
+    private static String target(String key, String name) {
+        String lower = name.trim().toLowerCase();
+        if (lower.indexOf(':') != -1) return lower;
+        int colon = key.indexOf(':');
+        return colon == -1 ? lower : key.substring(0, colon + 1) + lower;
+    }
+}
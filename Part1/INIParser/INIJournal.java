@@ -0,0 +1,406 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of the {@link INIParser#setEntry} and {@link INIParser#unsetEntry} calls
+ * made on a parser, which makes each of them durable without rewriting the INI file.
+ *
+ * <p>
+ * A journal is created by {@link INIParser#loadJournaled(String)}. It lives next to the INI
+ * file, in a file with the same name followed by {@code .journal}, and is replayed over the INI
+ * file whenever the file is loaded that way. Every set or unset appends one small checksummed
+ * record, so its cost does not depend on the size of the INI file.
+ *
+ * <p>
+ * A write returns once its record is on disk. Records are written with group commit: while
+ * one thread forces the journal to disk, the records of other writers accumulate in a buffer,
+ * and are all forced together by the next of them, so concurrent writers share fsyncs. The
+ * writes of a {@link INIParser#batch(Runnable) batch} are forced once, when the batch completes.
+ *
+ * <p>
+ * A change is applied to the dictionary, and passed to listeners, before its record is forced,
+ * so that writers do not hold the parser's lock while waiting for the disk. If the journal
+ * cannot be written, the write throws an {@code UncheckedIOException}, but its change is not
+ * undone: it stays visible in memory without being durable, as do the changes of the other
+ * writers whose records were forced with it. The journal then fails every later write, and the
+ * parser should be loaded again to get back to what is on disk.
+ *
+ * <p>
+ * Once the journal grows beyond a threshold, it is compacted: the INI file is edited into the
+ * current dictionary with an {@link INIDocument}, so its comments, ordering and formatting are
+ * kept, and the journal is emptied of the records that file now includes. In
+ * concurrent mode this happens on a background thread; otherwise on the writing thread. A crash
+ * at any point of a compaction loses nothing, because records are only dropped once the new
+ * INI file is in place, and replaying a record the file already includes has no effect.
+ *
+ * <p>
+ * Only {@code setEntry} and {@code unsetEntry} are journaled. Changes made through loads or
+ * reloads are persisted by the next compaction, which {@link #compact()} can trigger directly.
+ * A torn record at the end of the journal, left by a crash during a write that had therefore
+ * not returned, is discarded when the journal is replayed.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is safe for concurrent use.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIParser parser = new INIParser(true);
+ * try (INIJournal journal = parser.loadJournaled("config.ini")) {
+ *     parser.setEntry("wine:year", "2001"); // durable when it returns
+ * }
+ * }</pre>
+ */
+public final class INIJournal implements Closeable {
+
+    private static final byte SET = 'S', UNSET = 'U';
+
+    private final INIParser parser;
+    private final Path base;
+    private final Path path;
+    private final long compactionThreshold;
+    private final ExecutorService compactor;
+
+    // Guards the fields below. Positions count every byte ever appended, across compactions.
+    private final Object lock = new Object();
+    private FileChannel channel;
+    private long fileStart;   // position of the first byte of the journal file
+    private byte[] buffer = new byte[8192];
+    private byte[] spare = new byte[8192];
+    private int buffered;
+    private long appended;    // position after the last appended record
+    private long durable;     // position up to which records are forced to disk
+    private boolean flushing;
+    private IOException failure;
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    private final Object compactionLock = new Object();
+
+    private INIJournal(INIParser parser, Path base, long compactionThreshold, boolean background) throws IOException {
+        this.parser = parser;
+        this.base = base;
+        this.path = journalPath(base);
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = background ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "ini-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.appended = this.durable = channel.size();
+        channel.position(appended);
+    }
+
+    static Path journalPath(Path base) {
+        return base.resolveSibling(base.getFileName() + ".journal");
+    }
+
+    /**
+     * Replays the journal of {@code base}, if any, through {@code apply}, discarding a torn
+     * record at its end, and opens the journal for appending.
+     */
+    static INIJournal open(INIParser parser, Path base, long compactionThreshold, boolean background,
+            Replay apply) throws IOException {
+        Path path = journalPath(base);
+        if (Files.exists(path)) {
+            byte[] content = Files.readAllBytes(path);
+            int valid = replay(content, apply);
+            if (valid < content.length) {
+                INIParser.errorCallback().println("Discarding torn record at the end of " + path);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(false);
+                }
+            }
+        }
+        return new INIJournal(parser, base, compactionThreshold, background);
+    }
+
+    // Receives the replayed records in order.
+    interface Replay {
+        void apply(String key, String value, boolean unset);
+    }
+
+    // Applies the valid records at the start of content and returns their length.
+    private static int replay(byte[] content, Replay apply) {
+        ByteBuffer in = ByteBuffer.wrap(content);
+        CRC32C crc = new CRC32C();
+        int valid = 0;
+        while (in.hasRemaining()) {
+            byte op = in.get();
+            if (op != SET && op != UNSET || in.remaining() < 4) break;
+            int keyLength = in.getInt();
+            if (keyLength < 0 || in.remaining() < keyLength) break;
+            int keyStart = in.position();
+            in.position(keyStart + keyLength);
+            int valueLength = -1, valueStart = 0;
+            if (op == SET) {
+                if (in.remaining() < 4) break;
+                valueLength = in.getInt();
+                if (valueLength < -1 || in.remaining() < Math.max(valueLength, 0)) break;
+                valueStart = in.position();
+                in.position(valueStart + Math.max(valueLength, 0));
+            }
+            if (in.remaining() < 4) break;
+            crc.reset();
+            crc.update(content, valid, in.position() - valid);
+            if (in.getInt() != (int) crc.getValue()) break;
+
+            String key = new String(content, keyStart, keyLength, StandardCharsets.UTF_8);
+            String value = valueLength >= 0 ? new String(content, valueStart, valueLength, StandardCharsets.UTF_8) : null;
+            apply.apply(key, value, op == UNSET);
+            valid = in.position();
+        }
+        return valid;
+    }
+
+    // Encodes a record: op, key length, key, for a set value length (-1 for null) and value, CRC32C.
+    private static byte[] record(byte op, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + keyBytes.length + (op == SET ? 4 + valueBytes.length : 0) + 4);
+        record.put(op).putInt(keyBytes.length).put(keyBytes);
+        if (op == SET) record.putInt(value != null ? valueBytes.length : -1).put(valueBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    /**
+     * Returns the size of the journal file, including records not yet forced to disk.
+     *
+     * @return the size in bytes
+     */
+    public long getSize() {
+        synchronized (lock) {
+            return appended - fileStart;
+        }
+    }
+
+    /**
+     * Buffers the record of a set, or of an unset. Called by the parser while it holds its write
+     * lock, so records are in the order the writes were applied.
+     */
+    void append(String key, String value, boolean unset) {
+        byte[] record = record(unset ? UNSET : SET, key, value);
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("INIJournal is closed");
+            if (buffered + record.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, buffered + record.length));
+            }
+            System.arraycopy(record, 0, buffer, buffered, record.length);
+            buffered += record.length;
+            appended += record.length;
+        }
+    }
+
+    /**
+     * Returns once every record appended so far is forced to disk, forcing it if no other
+     * thread is, and starts a compaction if the journal outgrew its threshold.
+     */
+    void commit() throws IOException {
+        long target;
+        synchronized (lock) {
+            target = appended;
+        }
+        while (true) {
+            byte[] data;
+            int length;
+            long end;
+            synchronized (lock) {
+                while (flushing && durable < target) await();
+                if (durable >= target) break;
+                if (failure != null) throw new IOException("Journal write failed earlier", failure);
+                // Take everything buffered so far, ours and that of writers who arrived meanwhile.
+                flushing = true;
+                data = buffer;
+                length = buffered;
+                end = appended;
+                buffer = spare;
+                spare = data;
+                buffered = 0;
+            }
+            try {
+                ByteBuffer out = ByteBuffer.wrap(data, 0, length);
+                while (out.hasRemaining()) channel.write(out);
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    flushing = false;
+                    lock.notifyAll();
+                }
+                throw e;
+            }
+            synchronized (lock) {
+                durable = end;
+                flushing = false;
+                lock.notifyAll();
+            }
+        }
+        maybeCompact();
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        synchronized (lock) {
+            if (closed || compactionScheduled || appended - fileStart < compactionThreshold) return;
+            if (compactor != null && compactor.isShutdown()) return;
+            compactionScheduled = true;
+        }
+        if (compactor == null) {
+            compact();
+            return;
+        }
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                INIParser.errorCallback().println("Compaction of " + path + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Edits the INI file into the current dictionary and removes the records it now includes
+     * from the journal.
+     *
+     * <p>
+     * Only the entries that differ between the file and the dictionary are changed, as
+     * {@link INIDocument#save()} does, so comments and the layout of the file are kept. Entries
+     * that cannot be written as INI lines, such as entries without a section, stay in the
+     * journal as records, so they survive compaction too.
+     *
+     * @throws IOException if the INI file or the journal cannot be written; both then still
+     *                     describe the dictionary together
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            try {
+                long[] position = new long[1];
+                INIDictionary snapshot = parser.whileNotWriting(() -> {
+                    synchronized (lock) {
+                        position[0] = appended;
+                    }
+                    return parser.current();
+                });
+
+                ByteBuffer records = foldInto(snapshot);
+                truncate(position[0], records);
+            } finally {
+                synchronized (lock) {
+                    compactionScheduled = false;
+                }
+            }
+        }
+    }
+
+    // Replaces the journal by records followed by the records appended after from.
+    private void truncate(long from, ByteBuffer records) throws IOException {
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            synchronized (lock) {
+                while (flushing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while compacting the journal");
+                    }
+                }
+                if (closed) return;
+                ByteBuffer pendingRecords = ByteBuffer.wrap(buffer, 0, buffered);
+                while (pendingRecords.hasRemaining()) channel.write(pendingRecords);
+                buffered = 0;
+
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    long kept = records.remaining();
+                    while (records.hasRemaining()) out.write(records);
+                    long position = from - fileStart, end = appended - fileStart;
+                    while (position < end) position += channel.transferTo(position, end - position, out);
+                    out.force(false);
+                    INIDocument.replace(temp, path);
+                    channel.close();
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    channel.position(channel.size());
+                    fileStart = from - kept;
+                    durable = appended;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Edits the INI file into the entries of snapshot through an INIDocument, which keeps its
+    // comments and layout, and returns the records of the entries the file cannot express.
+    private ByteBuffer foldInto(INIDictionary snapshot) throws IOException {
+        try {
+            Files.createFile(base);
+        } catch (FileAlreadyExistsException e) {
+            // Edited below.
+        }
+        Map<String, String> file = new INIParser().loadBytes(Files.readAllBytes(base));
+        INIDocument document = INIDocument.open(base.toString());
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : snapshot.asMap().entrySet()) {
+            String key = entry.getKey(), value = entry.getValue();
+            if (!INIWriter.writable(key, value)) {
+                records.writeBytes(record(SET, key, value));
+            } else if (!value.equals(file.get(key))) {
+                document.set(key, value);
+            }
+        }
+        for (String key : file.keySet()) {
+            if (!snapshot.containsKey(key)) document.unset(key);
+        }
+        document.save();
+        return ByteBuffer.wrap(records.toByteArray());
+    }
+    /**
+     * Forces the remaining records to disk, stops journaling the parser's writes and closes the
+     * journal. A compaction in progress is completed first.
+     *
+     * @throws IOException if the remaining records cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        parser.detachJournal(this);
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            commit();
+        } finally {
+            synchronized (compactionLock) {
+                synchronized (lock) {
+                    closed = true;
+                    channel.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.*;
+
+/**
+ * A sorted array of the keys of an {@link INIDictionary}, for prefix, pattern and range queries.
+ *
+ * <p>
+ * The index is an immutable snapshot of the keys at one structure version of the dictionary. It
+ * is built on the first ordered query after entries were added or removed, so loading and
+ * updating values never pay for keeping keys sorted. Queries binary-search the start of the
+ * requested range and then walk only the matching keys.
+ */
+final class INIKeyIndex {
+
+    final int structureVersion;
+    private final String[] keys;
+
+    INIKeyIndex(int structureVersion, Iterator<INIKeyTable.Entry> entries, int size) {
+        this.structureVersion = structureVersion;
+        this.keys = new String[size];
+        for (int i = 0; i < size; i++) keys[i] = entries.next().key;
+        Arrays.sort(keys);
+    }
+
+    /**
+     * Returns the keys starting with {@code prefix}, in ascending order.
+     */
+    List<String> withPrefix(String prefix) {
+        List<String> result = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+            result.add(keys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys matching the glob {@code pattern}, in ascending order. Only the keys
+     * starting with the pattern's literal prefix, up to its first wildcard, are examined.
+     */
+    List<String> matching(String pattern) {
+        int wildcard = 0;
+        while (wildcard < pattern.length() && pattern.charAt(wildcard) != '*' && pattern.charAt(wildcard) != '?') {
+            wildcard++;
+        }
+        String prefix = pattern.substring(0, wildcard);
+        List<String> result = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+            if (globMatches(pattern, wildcard, keys[i], wildcard)) result.add(keys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys between {@code from} (inclusive) and {@code to} (exclusive), in ascending
+     * order; a {@code null} bound leaves that side of the range open.
+     */
+    List<String> range(String from, String to) {
+        int start = from != null ? lowerBound(from) : 0;
+        int end = to != null ? lowerBound(to) : keys.length;
+        return start < end ? new ArrayList<>(Arrays.asList(keys).subList(start, end)) : new ArrayList<>();
+    }
+
+    // Index of the first key not less than target.
+    private int lowerBound(String target) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(target) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // '*' matches any run of characters, '?' any single character.
+    private static boolean globMatches(String pattern, int p, String text, int t) {
+        int starP = -1, starT = -1;
+        while (t < text.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == text.charAt(t))) {
+                p++;
+                t++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                starP = p++;
+                starT = t;
+            } else if (starP != -1) {
+                p = starP + 1;
+                t = ++starT;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.*;
+
+/**
+ * Hash table from case-insensitive keys to String values.
+ *
+ * <p>
+ * Keys are hashed and compared character by character through a case fold, so lookups take any
+ * {@link CharSequence} in any case and never allocate. Keys are stored in lowercase, the form in
+ * which {@link INIParser} reports them; a lowercase copy is only created when a new key is added.
+ *
+ * <p>
+ * The table uses open addressing with linear probing over a power-of-two array of entries, and
+ * removes entries by shifting later entries of the same probe run back, so no tombstones are left.
+ *
+ * <p>
+ * A blocked Bloom filter of about ten bits per key sits in front of the table: a lookup first
+ * tests three bits of a single 64-bit word, and most lookups of absent keys end there. Removed
+ * keys stay in the filter, which only costs an occasional unnecessary probe, until the table is
+ * resized and the filter rebuilt.
+ */
+final class INIKeyTable {
+
+    /**
+     * A key, its current value, and the value's typed conversions.
+     *
+     * <p>
+     * Each conversion is computed on first use and cached until the value is replaced, so
+     * repeated typed reads neither parse nor allocate. A conversion is published by setting its
+     * bit in the volatile {@code parsed} word after storing its result; concurrent readers of an
+     * unchanging entry may at worst compute the same result twice.
+     */
+    static final class Entry {
+        private static final int INT = 1, INT_VALID = 1 << 1;
+        private static final int LONG = 1 << 2, LONG_VALID = 1 << 3;
+        private static final int DOUBLE = 1 << 4, DOUBLE_VALID = 1 << 5;
+        private static final int BOOLEAN = 1 << 6, BOOLEAN_VALID = 1 << 7, BOOLEAN_TRUE = 1 << 8;
+
+        final String key;
+        final int hash;
+        private String value;
+        private volatile int parsed;
+        private int intValue;
+        private long longValue;
+        private double doubleValue;
+
+        Entry(String key, int hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+
+        Entry(Entry other) {
+            this.key = other.key;
+            this.hash = other.hash;
+            this.value = other.value;
+            // Read the flags first: a conversion cached after this read is not copied, and one
+            // cached before it is visible along with its result.
+            int flags = other.parsed;
+            this.intValue = other.intValue;
+            this.longValue = other.longValue;
+            this.doubleValue = other.doubleValue;
+            this.parsed = flags;
+        }
+
+        String value() {
+            return value;
+        }
+
+        void setValue(String value) {
+            this.value = value;
+            this.parsed = 0;
+        }
+
+        int intValue(int defaultValue) {
+            int flags = parsed;
+            if ((flags & INT) == 0) {
+                flags = INT;
+                try {
+                    if (value != null) {
+                        intValue = Integer.parseInt(value);
+                        flags |= INT_VALID;
+                    }
+                } catch (NumberFormatException e) {
+                    // Cached as invalid.
+                }
+                parsed |= flags;
+            }
+            return (flags & INT_VALID) != 0 ? intValue : defaultValue;
+        }
+
+        long longValue(long defaultValue) {
+            int flags = parsed;
+            if ((flags & LONG) == 0) {
+                flags = LONG;
+                try {
+                    if (value != null) {
+                        longValue = Long.parseLong(value);
+                        flags |= LONG_VALID;
+                    }
+                } catch (NumberFormatException e) {
+                    // Cached as invalid.
+                }
+                parsed |= flags;
+            }
+            return (flags & LONG_VALID) != 0 ? longValue : defaultValue;
+        }
+
+        double doubleValue(double defaultValue) {
+            int flags = parsed;
+            if ((flags & DOUBLE) == 0) {
+                flags = DOUBLE;
+                try {
+                    if (value != null) {
+                        doubleValue = Double.parseDouble(value);
+                        flags |= DOUBLE_VALID;
+                    }
+                } catch (NumberFormatException e) {
+                    // Cached as invalid.
+                }
+                parsed |= flags;
+            }
+            return (flags & DOUBLE_VALID) != 0 ? doubleValue : defaultValue;
+        }
+
+        boolean booleanValue(boolean defaultValue) {
+            int flags = parsed;
+            if ((flags & BOOLEAN) == 0) {
+                flags = BOOLEAN;
+                if (value != null) {
+                    if (isOneOf(value, "1", "y", "yes", "true")) {
+                        flags |= BOOLEAN_VALID | BOOLEAN_TRUE;
+                    } else if (isOneOf(value, "0", "n", "no", "false")) {
+                        flags |= BOOLEAN_VALID;
+                    }
+                }
+                parsed |= flags;
+            }
+            return (flags & BOOLEAN_VALID) != 0 ? (flags & BOOLEAN_TRUE) != 0 : defaultValue;
+        }
+
+        private static boolean isOneOf(String value, String... words) {
+            for (String word : words) {
+                if (value.equalsIgnoreCase(word)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private Entry[] table;
+    private long[] bloom;
+    private int size;
+
+    INIKeyTable() {
+        this.table = new Entry[MIN_CAPACITY];
+        this.bloom = new long[MIN_CAPACITY / 8];
+    }
+
+    private INIKeyTable(INIKeyTable other) {
+        this.table = new Entry[other.table.length];
+        for (int i = 0; i < table.length; i++) {
+            Entry entry = other.table[i];
+            if (entry != null) table[i] = new Entry(entry);
+        }
+        this.bloom = other.bloom.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * Returns an independent copy of this table.
+     */
+    INIKeyTable copy() {
+        return new INIKeyTable(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the entry for {@code key}, or {@code null} if there is none.
+     */
+    Entry find(CharSequence key) {
+        return find(key, hash(key));
+    }
+
+    /**
+     * Returns the entry for {@code key}, whose {@link #hash} is {@code hash}, or {@code null} if
+     * there is none. Lets callers that search several tables hash the key only once.
+     */
+    Entry find(CharSequence key, int hash) {
+        if (!mightContain(hash)) return null;
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null) return null;
+            if (entry.hash == hash && foldedEquals(entry.key, key)) return entry;
+        }
+    }
+
+    /**
+     * Returns the entry for {@code key}, adding one with a {@code null} value if there is none.
+     * Callers detect an addition through {@link #size()}.
+     */
+    Entry insert(CharSequence key) {
+        Entry entry = find(key);
+        if (entry != null) return entry;
+
+        // Locale-specific lowercasing can change the text, so look the stored form up as well.
+        String stored = key.toString().toLowerCase();
+        int hash = hash(stored);
+        entry = find(stored);
+        if (entry != null) return entry;
+
+        if ((size + 1) * 4 > table.length * 3) resize(table.length * 2);
+        entry = new Entry(stored, hash);
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = entry;
+        addToBloom(hash);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Removes and returns the entry for {@code key}, or returns {@code null} if there is none.
+     */
+    Entry remove(CharSequence key) {
+        int mask = table.length - 1;
+        int hash = hash(key);
+        int i = hash & mask;
+        Entry entry;
+        while ((entry = table[i]) != null) {
+            if (entry.hash == hash && foldedEquals(entry.key, key)) break;
+            i = (i + 1) & mask;
+        }
+        if (entry == null) return null;
+
+        // Shift back later entries of the run that would become unreachable through the gap at i.
+        int gap = i;
+        for (int j = (gap + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = table[j].hash & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = null;
+        size--;
+        return entry;
+    }
+
+    /**
+     * Returns an iterator over the entries, in table order.
+     */
+    Iterator<Entry> iterator() {
+        return new Iterator<Entry>() {
+            private final Entry[] entries = table;
+            private int index = advance(0);
+
+            private int advance(int from) {
+                while (from < entries.length && entries[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < entries.length;
+            }
+
+            @Override
+            public Entry next() {
+                if (index >= entries.length) throw new NoSuchElementException();
+                Entry entry = entries[index];
+                index = advance(index + 1);
+                return entry;
+            }
+        };
+    }
+
+    private void resize(int capacity) {
+        Entry[] old = table;
+        table = new Entry[capacity];
+        bloom = new long[capacity / 8];
+        int mask = capacity - 1;
+        for (Entry entry : old) {
+            if (entry == null) continue;
+            int i = entry.hash & mask;
+            while (table[i] != null) i = (i + 1) & mask;
+            table[i] = entry;
+            addToBloom(entry.hash);
+        }
+    }
+
+    // The filter word is chosen by the high bits of a remix of the hash, the three bits within
+    // it by the low bits, so the bits are independent of the table slot.
+    private static long bloomMix(int hash) {
+        return hash * 0x9E3779B97F4A7C15L;
+    }
+
+    private static long bloomBits(long mix) {
+        return (1L << mix) | (1L << (mix >>> 6)) | (1L << (mix >>> 12));
+    }
+
+    private void addToBloom(int hash) {
+        long mix = bloomMix(hash);
+        bloom[(int) (mix >>> 40) & (bloom.length - 1)] |= bloomBits(mix);
+    }
+
+    private boolean mightContain(int hash) {
+        long mix = bloomMix(hash);
+        long bits = bloomBits(mix);
+        return (bloom[(int) (mix >>> 40) & (bloom.length - 1)] & bits) == bits;
+    }
+
+    /**
+     * Returns the case-folded hash of {@code key}.
+     */
+    static int hash(CharSequence key) {
+        int h = 0;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            h = 31 * h + fold(key.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns {@code true} if {@code a} and {@code b} are equal ignoring case.
+     */
+    static boolean foldedEquals(CharSequence a, CharSequence b) {
+        int n = a.length();
+        if (n != b.length()) return false;
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i), y = b.charAt(i);
+            if (x != y && fold(x) != fold(y)) return false;
+        }
+        return true;
+    }
+
+    // Same folding as String.equalsIgnoreCase, with a fast path for ASCII.
+    static char fold(char c) {
+        if (c < 0x80) return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
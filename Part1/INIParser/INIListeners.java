@@ -0,0 +1,99 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The {@link INISubscription}s of one {@link INIParser}, indexed by the key or section they
+ * listen to.
+ *
+ * <p>
+ * A change is dispatched by looking up each changed key, and its section, in the index, so its
+ * cost depends on the number of changed keys and of subscriptions that match them, not on the
+ * total number of subscriptions. Matching subscriptions are handed the key and, unless a
+ * delivery is already pending for them, queued on a pool of daemon threads shared by all parsers.
+ * The pool has one thread per processor, and at least two, which exit when idle; a subscription
+ * has at most one delivery queued or running, so a slow listener holds at most one thread.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is safe for concurrent use.
+ */
+final class INIListeners {
+
+    private static final ExecutorService EXECUTOR = newPool();
+
+    // Subscriptions by lowercase key or section name. Arrays are replaced, never modified.
+    private final Map<String, INISubscription[]> byKey = new ConcurrentHashMap<>();
+    private final Map<String, INISubscription[]> bySection = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Returns {@code true} if there are no subscriptions, so writers can skip working out what
+     * they changed.
+     */
+    boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    INISubscription add(String name, boolean section, Consumer<Set<String>> listener) {
+        INISubscription subscription = new INISubscription(this, name.toLowerCase(), section, listener, EXECUTOR);
+        (section ? bySection : byKey).compute(subscription.name, (key, current) -> {
+            INISubscription[] grown = current == null ? new INISubscription[1] : Arrays.copyOf(current, current.length + 1);
+            grown[grown.length - 1] = subscription;
+            return grown;
+        });
+        count.incrementAndGet();
+        return subscription;
+    }
+
+    void remove(INISubscription subscription) {
+        (subscription.section ? bySection : byKey).computeIfPresent(subscription.name, (key, current) -> {
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index == -1) return current;
+            count.decrementAndGet();
+            if (current.length == 1) return null;
+            INISubscription[] shrunk = new INISubscription[current.length - 1];
+            System.arraycopy(current, 0, shrunk, 0, index);
+            System.arraycopy(current, index + 1, shrunk, index, shrunk.length - index);
+            return shrunk;
+        });
+    }
+
+    /**
+     * Passes changed keys, in the lowercase form the dictionary stores them in, to the
+     * subscriptions for those keys and their sections.
+     */
+    void dispatch(Collection<String> keys) {
+        if (isEmpty()) return;
+        List<INISubscription> due = new ArrayList<>();
+        boolean sections = !bySection.isEmpty();
+        for (String key : keys) {
+            offer(byKey.get(key), key, due);
+            if (sections) offer(bySection.get(INIDictionary.sectionOf(key)), key, due);
+        }
+        for (INISubscription subscription : due) subscription.schedule();
+    }
+
+    private static void offer(INISubscription[] subscriptions, String key, List<INISubscription> due) {
+        if (subscriptions == null) return;
+        for (INISubscription subscription : subscriptions) {
+            if (subscription.offer(key)) due.add(subscription);
+        }
+    }
+
+    private static ExecutorService newPool() {
+        int size = Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "ini-listener-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
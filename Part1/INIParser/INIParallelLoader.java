@@ -0,0 +1,141 @@
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a buffer of INI content in parallel.
+ *
+ * <p>
+ * The buffer is split into chunks at line boundaries and every chunk is scanned by its own
+ * {@link INIByteScanner} on a {@link ForkJoinPool}. A chunk cannot know which section its first
+ * keys belong to, so keys seen before the chunk's first section header are kept unresolved and
+ * are prefixed with the section carried over from the preceding chunks when the results are
+ * merged. Merging applies the chunks in source order, so later entries overwrite earlier ones
+ * exactly as in the sequential loader.
+ */
+final class INIParallelLoader {
+
+    // Chunks smaller than this are not worth a task of their own.
+    private static final int MIN_CHUNK = 1 << 20;
+
+    private final ForkJoinPool pool;
+
+    INIParallelLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the index one past the last line terminator in the first {@code length} bytes of
+     * {@code buf}, or 0 if there is none.
+     */
+    static int lastLineEnd(ByteBuffer buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            byte b = buf.get(i);
+            if (b == '\n' || b == '\r') return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Parses the complete lines between {@code from} and {@code to} into {@code target}.
+     *
+     * @param buf     the buffer holding the INI content
+     * @param from    the index of the first byte, at the start of a line
+     * @param to      the index one past the last byte, at the end of a line
+     * @param section the section in effect at {@code from}
+     * @param target  the dictionary receiving the entries
+     * @param errors  the stream receiving syntax errors, in source order
+     * @return the section in effect at {@code to}
+     */
+    String parse(ByteBuffer buf, int from, int to, String section,
+                 INIDictionary target, PrintStream errors) {
+        List<Chunk> chunks = split(buf, from, to);
+        if (chunks.size() == 1) {
+            chunks.get(0).compute();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(chunks);
+                }
+            });
+        }
+
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.leading.size(); i += 2) {
+                target.put(section + ":" + chunk.leading.get(i), chunk.leading.get(i + 1));
+            }
+            for (int i = 0; i < chunk.resolved.size(); i += 2) {
+                target.put(chunk.resolved.get(i), chunk.resolved.get(i + 1));
+            }
+            for (String error : chunk.errors) {
+                errors.println(error);
+            }
+            if (chunk.section != null) section = chunk.section;
+        }
+        return section;
+    }
+
+    private List<Chunk> split(ByteBuffer buf, int from, int to) {
+        int chunkSize = Math.max(MIN_CHUNK, (to - from) / (pool.getParallelism() * 4));
+        List<Chunk> chunks = new ArrayList<>();
+        int start = from;
+        while (start < to) {
+            int end = (int) Math.min((long) start + chunkSize, to);
+            while (end < to && buf.get(end - 1) != '\n' && buf.get(end - 1) != '\r') end++;
+            chunks.add(new Chunk(buf, start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static final class Chunk extends RecursiveAction implements INIByteScanner.Sink {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buf;
+        private final int from;
+        private final int to;
+
+        // Flattened key/value pairs; leading keys still lack their section prefix.
+        private final List<String> leading = new ArrayList<>();
+        private final List<String> resolved = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private String section;
+
+        Chunk(ByteBuffer buf, int from, int to) {
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            new INIByteScanner().scan(buf, from, to, true, this);
+        }
+
+        @Override
+        public void section(String name) {
+            section = name;
+        }
+
+        @Override
+        public void keyValue(String key, String value) {
+            if (section == null) {
+                leading.add(key);
+                leading.add(value);
+            } else {
+                resolved.add(section + ":" + key);
+                resolved.add(value);
+            }
+        }
+
+        @Override
+        public void error(String message) {
+            errors.add(message);
+        }
+    }
+}
@@ -1,5 +1,17 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Parser for INI files.
@@ -11,13 +23,21 @@ import java.util.*;
  * setting or unsetting entries and accessing sections directly.
  * 
  * <p>
+ * Entries are named {@code section:key}. Names are case-insensitive: they are stored in lowercase,
+ * and every query, {@link #setEntry} and {@link #unsetEntry} matches them ignoring case, without
+ * allocating a lowercase copy of the name.
+ * 
+ * <p>
  * This API is translated from the iniparser API found here:
  * <a href="https://github.com/ndevilla/iniparser/tree/master/src">iniparser GitHub</a>
  * 
  * <p>
- * <strong>Thread Safety:</strong> The {@code INIParser} class is not thread-safe. Access to the
- * dictionary (i.e., loading, modifying, and querying) should be synchronized externally if used
- * in a concurrent environment.
+ * <strong>Thread Safety:</strong> An {@code INIParser} created with {@link #INIParser()} is not
+ * thread-safe. Access to the dictionary (i.e., loading, modifying, and querying) should be
+ * synchronized externally if used in a concurrent environment. An {@code INIParser} created with
+ * {@code new INIParser(true)} is safe for concurrent use: readers query an immutable snapshot of
+ * the dictionary without locking, and every write publishes a new snapshot (see
+ * {@link #batch(Runnable)} for coalescing several writes into one snapshot).
  * 
  * <h3>Example Usage:</h3>
  * <pre>{@code
@@ -45,14 +65,59 @@ import java.util.*;
  */
 public class INIParser {
 
-    private final Map<String, String> dictionary;
-    private static PrintStream errorCallback;
+    // Largest region mapped at once; longer files are mapped in consecutive windows.
+    private static final long MAP_WINDOW = 1L << 30;
+
+    // Markers for update()'s record of previous values: a missing entry, and a null value.
+    private static final Object ABSENT = new Object();
+    private static final Object NULL = new Object();
+
+    private volatile INIDictionary dictionary;
+    private static PrintStream errorCallback = System.err;
+
+    // Concurrent mode only: serializes writers, and holds the working copy during batch().
+    private final boolean concurrent;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private INIDictionary pending;
+
+    // Layouts recorded by reloadIncremental(), guarded like the dictionary's writes.
+    private final Map<Path, INISectionLayout> layouts = new HashMap<>();
+
+    // Set by loadJournaled(). A concurrent batch stages its records until it publishes.
+    private volatile INIJournal journal;
+    private int batchDepth;
+    private final List<Runnable> staged = new ArrayList<>();
+
+    // Change subscriptions. A concurrent batch collects its changed keys until it publishes.
+    private final INIListeners listeners = new INIListeners();
+    private final Set<String> stagedChanges = new HashSet<>();
+
+    // Built on the first getInterpolated() after a load, then kept up to date by each write.
+    private volatile INIInterpolation interpolation;
+    private boolean stagedLoad;
 
     /**
      * Constructs an empty INIParser instance with an empty configuration dictionary.
      */
     public INIParser() {
-        this.dictionary = new HashMap<>();
+        this(false);
+    }
+
+    /**
+     * Constructs an empty INIParser instance, optionally in concurrent mode.
+     *
+     * <p>
+     * In concurrent mode the dictionary is held as an immutable snapshot behind a volatile
+     * reference. Queries read the current snapshot without any locking. Loads, {@link #setEntry}
+     * and {@link #unsetEntry} copy the snapshot, apply their change and publish the copy, so
+     * writes are expensive and are meant to be rare compared to reads.
+     *
+     * @param concurrent {@code true} to allow concurrent queries and writes without external
+     *                   synchronization
+     */
+    public INIParser(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.dictionary = new INIDictionary();
     }
 
     /**
@@ -65,11 +130,16 @@ public class INIParser {
         errorCallback = (errCallback != null) ? errCallback : System.err;
     }
 
+    // The stream that syntax errors are reported to, for loaders outside this class.
+    static PrintStream errorCallback() {
+        return errorCallback;
+    }
+
     /**
      * Loads the contents of an INI file, populating the dictionary with parsed entries.
      *
      * @param fileName the name of the INI file to parse
-     * @return the populated dictionary of parsed entries
+     * @return an unmodifiable view of the populated dictionary of parsed entries
      * @throws IOException if the file cannot be read
      * 
      * <h3>Example Usage:</h3>
@@ -91,53 +161,191 @@ public class INIParser {
     /**
      * Loads the contents of an INI file from a BufferedReader, populating the dictionary.
      *
+     * <p>
+     * In concurrent mode the entries become visible all at once when loading completes, and the
+     * returned dictionary is the published snapshot. If reading fails, nothing is published.
+     *
      * @param reader BufferedReader providing the INI file contents
-     * @return the populated dictionary of parsed entries
+     * @return an unmodifiable view of the populated dictionary of parsed entries
      * @throws IOException if an error occurs while reading
      */
     public Map<String, String> loadFromReader(BufferedReader reader) throws IOException {
-        String line, section = "";
-        while ((line = reader.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) continue;
+        INIDictionary target = beginWrite();
+        try {
+            parse(reader, new INIEventHandler() {
+                @Override
+                public void keyValue(String section, String key, String value, long line, long offset) {
+                    target.put(section + ":" + key, value);
+                }
 
-            if (line.startsWith("[")) {
-                section = parseSection(line);
-            } else {
-                parseKeyValue(line, section);
-            }
+                @Override
+                public void syntaxError(String message, long line, long offset) {
+                    errorCallback.println(message);
+                }
+            });
+            return publishLoad(target);
+        } finally {
+            endWrite();
         }
-        return dictionary;
     }
 
-    // Private methods for loadFromReader()
-    private String parseSection(String line) {
-        int end = line.indexOf(']');
-        if (end == -1) {
-            errorCallback.println("Syntax error: malformed section header.");
-            return "";
+    /**
+     * Parses INI content from a Reader and reports it to a handler as a stream of events,
+     * without storing anything in the dictionary.
+     *
+     * <p>
+     * Section headers, entries, comments and syntax errors are reported in input order, each
+     * with its line number and character offset. Memory use is independent of the input size,
+     * so this is suited to scanning, filtering or validating files too large to load.
+     * {@link #loadFromReader(BufferedReader)} is itself implemented on top of this method.
+     *
+     * @param reader  the Reader providing the INI content
+     * @param handler the handler receiving the events
+     * @throws IOException if an error occurs while reading
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * try (Reader reader = new FileReader("huge.ini")) {
+     *     INIParser.parse(reader, new INIEventHandler() {
+     *         @Override
+     *         public void syntaxError(String message, long line, long offset) {
+     *             System.err.println("line " + line + ": " + message);
+     *         }
+     *     });
+     * }
+     * }</pre>
+     */
+    public static void parse(Reader reader, INIEventHandler handler) throws IOException {
+        new INIStreamParser(reader, handler).parse();
+    }
+
+    /**
+     * Loads the contents of an INI file by memory-mapping it and scanning its bytes directly,
+     * populating the dictionary with parsed entries.
+     *
+     * <p>
+     * Unlike {@link #load(String)}, no intermediate String is created per line: section headers,
+     * comments, {@code =} separators and quotes are recognized on the mapped bytes, and only the
+     * final keys and values are decoded. The resulting dictionary is identical to the one produced
+     * by {@link #loadFromReader(BufferedReader)} for the same file. The file must be UTF-8 encoded.
+     *
+     * @param fileName the name of the INI file to parse
+     * @return an unmodifiable view of the populated dictionary of parsed entries
+     * @throws IOException if the file cannot be read or contains a line too long to be mapped
+     */
+    public Map<String, String> loadMapped(String fileName) throws IOException {
+        INIDictionary target = beginWrite();
+        try {
+            INIByteScanner scanner = new INIByteScanner();
+            DictionarySink sink = new DictionarySink(target);
+            scanMapped(fileName, (buffer, length, last) -> scanner.scan(buffer, 0, length, last, sink));
+            return publishLoad(target);
+        } finally {
+            endWrite();
         }
-        return line.substring(1, end).trim().toLowerCase();
     }
 
-    private void parseKeyValue(String line, String section) {
-        String[] keyValue = line.split("=", 2);
-        if (keyValue.length < 2) {
-            errorCallback.println("Syntax error: malformed key-value pair.");
-            return;
+    /**
+     * Loads the contents of an INI file using all threads of the common {@link ForkJoinPool}.
+     *
+     * @param fileName the name of the INI file to parse
+     * @return an unmodifiable view of the populated dictionary of parsed entries
+     * @throws IOException if the file cannot be read or contains a line too long to be mapped
+     * @see #loadParallel(String, ForkJoinPool)
+     */
+    public Map<String, String> loadParallel(String fileName) throws IOException {
+        return loadParallel(fileName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads the contents of an INI file by splitting it into chunks at line boundaries and parsing
+     * the chunks concurrently on the given pool.
+     *
+     * <p>
+     * Keys at the start of a chunk are attributed to the section opened in an earlier chunk, and
+     * the chunks are merged in file order, so the resulting dictionary, including which of several
+     * duplicate keys wins, is identical to the one produced by {@link #loadFromReader(BufferedReader)}.
+     * The file must be UTF-8 encoded.
+     *
+     * @param fileName the name of the INI file to parse
+     * @param pool     the pool that parses the chunks
+     * @return an unmodifiable view of the populated dictionary of parsed entries
+     * @throws IOException if the file cannot be read or contains a line too long to be mapped
+     */
+    public Map<String, String> loadParallel(String fileName, ForkJoinPool pool) throws IOException {
+        INIDictionary target = beginWrite();
+        try {
+            INIParallelLoader loader = new INIParallelLoader(pool);
+            String[] section = {""};
+            scanMapped(fileName, (buffer, length, last) -> {
+                int end = last ? length : INIParallelLoader.lastLineEnd(buffer, length);
+                section[0] = loader.parse(buffer, 0, end, section[0], target, errorCallback);
+                return end;
+            });
+            return publishLoad(target);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Used by INIBulkLoader: reading a small file whole is cheaper than mapping it.
+    Map<String, String> loadBytes(byte[] content) {
+        INIDictionary target = beginWrite();
+        try {
+            new INIByteScanner().scan(ByteBuffer.wrap(content), 0, content.length, true, new DictionarySink(target));
+            return publishLoad(target);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Parses one mapped window and returns the number of bytes consumed.
+    interface WindowParser {
+        int parse(MappedByteBuffer buffer, int length, boolean last);
+    }
+
+    static void scanMapped(String fileName, WindowParser parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(size - position, MAP_WINDOW);
+                boolean last = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = parser.parse(buffer, (int) length, last);
+                if (consumed == 0 && !last) {
+                    throw new IOException("Line exceeds maximum mappable length in " + fileName);
+                }
+                position += consumed;
+            }
         }
-        String key = section + ":" + keyValue[0].trim().toLowerCase();
-        String value = parseValue(keyValue[1]);
-        dictionary.put(key, value);
     }
 
-    private String parseValue(String valuePart) {
-        valuePart = valuePart.trim();
-        if ((valuePart.startsWith("\"") && valuePart.endsWith("\"")) || 
-            (valuePart.startsWith("'") && valuePart.endsWith("'"))) {
-            valuePart = valuePart.substring(1, valuePart.length() - 1);
+    // Applies scanned items to the dictionary the same way loadFromReader() does.
+    private static class DictionarySink implements INIByteScanner.Sink {
+        private final INIDictionary target;
+        private String section = "";
+        private int errors;
+
+        DictionarySink(INIDictionary target) {
+            this.target = target;
+        }
+
+        @Override
+        public void section(String name) {
+            section = name;
+        }
+
+        @Override
+        public void keyValue(String key, String value) {
+            target.put(section + ":" + key, value);
+        }
+
+        @Override
+        public void error(String message) {
+            errors++;
+            errorCallback.println(message);
         }
-        return valuePart;
     }
 
     /**
@@ -151,38 +359,178 @@ public class INIParser {
         return dictionary.getOrDefault(key, defaultValue);
     }
 
+    /**
+     * Retrieves the value associated with the specified key, with its references to other
+     * entries and to environment variables substituted.
+     *
+     * <p>
+     * A value refers to an entry with {@code ${section:key}}, to an entry of its own section
+     * with {@code ${key}}, and to an environment variable with {@code ${env:NAME}}. Referenced
+     * values are substituted in turn; references to missing entries or variables are kept as
+     * written. See {@link INIInterpolation}.
+     *
+     * <p>
+     * The first call after a load builds the graph of references between all values, reports
+     * any cycle to the error callback and resolves every value with references, in an order
+     * where each value comes after those it refers to. The results are cached: later calls
+     * return them without substituting again, and {@link #setEntry}, {@link #unsetEntry},
+     * {@link #update} and the reloads only discard the values that depend on the keys they
+     * changed. Values on a cycle are returned unsubstituted.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default value if the key is not found
+     * @return the interpolated value, or {@code defaultValue} if the key is absent
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * // [paths]
+     * // root = ${env:HOME}/app
+     * // logs = ${root}/logs
+     * String logs = parser.getInterpolated("paths:logs", null); // "/home/user/app/logs"
+     * }</pre>
+     */
+    public String getInterpolated(String key, String defaultValue) {
+        INIKeyTable.Entry entry = dictionary.entry(key);
+        if (entry == null) return defaultValue;
+        String value = entry.value();
+        if (value == null || value.indexOf("${") == -1) return value;
+        String resolved = interpolation().get(entry.key);
+        return resolved != null ? resolved : value;
+    }
+
+    // Returns the interpolation of the published dictionary, building it if needed.
+    private INIInterpolation interpolation() {
+        INIInterpolation resolved = interpolation;
+        if (resolved != null) return resolved;
+        if (concurrent) writeLock.lock();
+        try {
+            if (interpolation == null) interpolation = new INIInterpolation(dictionary);
+            return interpolation;
+        } finally {
+            endWrite();
+        }
+    }
+
     /**
      * Retrieves the integer value associated with the specified key.
      *
+     * <p>
+     * The parsed value is cached with the entry until the entry is changed, so repeated calls
+     * do not parse the value again.
+     *
      * @param key          the key to retrieve the value for
      * @param defaultValue the default integer value if the key is not found or cannot be parsed as an integer
      * @return the integer value, or {@code defaultValue} if the key is absent or invalid
      */
     public int getInt(String key, int defaultValue) {
-        String value = dictionary.get(key);
-        if (value == null) return defaultValue;
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+        INIKeyTable.Entry entry = dictionary.entry(key);
+        return entry != null ? entry.intValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the long value associated with the specified key.
+     *
+     * <p>
+     * The parsed value is cached with the entry until the entry is changed, so repeated calls
+     * do not parse the value again.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default long value if the key is not found or cannot be parsed as a long
+     * @return the long value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public long getLong(String key, long defaultValue) {
+        INIKeyTable.Entry entry = dictionary.entry(key);
+        return entry != null ? entry.longValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the double value associated with the specified key.
+     *
+     * <p>
+     * The parsed value is cached with the entry until the entry is changed, so repeated calls
+     * do not parse the value again.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default double value if the key is not found or cannot be parsed as a double
+     * @return the double value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public double getDouble(String key, double defaultValue) {
+        INIKeyTable.Entry entry = dictionary.entry(key);
+        return entry != null ? entry.doubleValue(defaultValue) : defaultValue;
     }
 
     /**
      * Retrieves the boolean value associated with the specified key.
      *
+     * <p>
+     * {@code 1}, {@code y}, {@code yes} and {@code true} are read as {@code true}, and {@code 0},
+     * {@code n}, {@code no} and {@code false} as {@code false}, ignoring case. The result is
+     * cached with the entry until the entry is changed.
+     *
      * @param key          the key to retrieve the value for
      * @param defaultValue the default boolean value if the key is not found or cannot be parsed as a boolean
      * @return the boolean value, or {@code defaultValue} if the key is absent or invalid
      */
     public boolean getBoolean(String key, boolean defaultValue) {
-        String value = dictionary.get(key);
-        if (value == null) return defaultValue;
-        switch (value.toLowerCase()) {
-            case "1": case "y": case "yes": case "true": return true;
-            case "0": case "n": case "no": case "false": return false;
-            default: return defaultValue;
-        }
+        INIKeyTable.Entry entry = dictionary.entry(key);
+        return entry != null ? entry.booleanValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Resolves an entry name once into a handle that reads the entry without looking it up again.
+     *
+     * <p>
+     * The handle stays valid for the lifetime of this parser and always reflects the current
+     * value of the entry, including after {@link #setEntry}, {@link #unsetEntry} and reloads, and
+     * even if the entry does not exist yet. As long as no entry is added or removed, a read
+     * through the handle goes straight to the entry without hashing its name; after such a change
+     * the next read resolves the name again.
+     *
+     * @param key the name of the entry, matched ignoring case
+     * @return a handle on the entry
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * INIHandle year = parser.handle("wine:year");
+     * for (Request request : requests) {
+     *     int y = year.getInt(-1);
+     * }
+     * }</pre>
+     */
+    public INIHandle handle(String key) {
+        return new INIHandle(this, key);
+    }
+
+    // The dictionary queries should currently read, for handles.
+    INIDictionary current() {
+        return dictionary;
+    }
+
+    /**
+     * Binds the entries of a section onto a record or an interface.
+     *
+     * <p>
+     * Each record component, or no-argument interface method, receives the converted value of
+     * the section's entry of the same name; see {@link INIBinder} for the supported types,
+     * annotations and defaults. The type is inspected once and its binding cached, so binding
+     * many sections of one type costs about as much as reading their entries. In concurrent mode
+     * all values are read from the same snapshot.
+     *
+     * @param section the section to bind
+     * @param type    the record or interface type to bind to
+     * @return a new instance holding the section's current values
+     * @throws IllegalArgumentException if {@code type} is not a record or interface, or has a
+     *                                  property of an unsupported type or an invalid default
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * record Wine(String grape, int year, @INIBinder.Default("12.0") double alcohol) {}
+     *
+     * Wine wine = parser.bind("wine", Wine.class);
+     * }</pre>
+     */
+    public <T> T bind(String section, Class<T> type) {
+        return INIBinder.bind(dictionary, section, type);
     }
 
     /**
@@ -191,27 +539,84 @@ public class INIParser {
      * @return the total number of sections found in the dictionary
      */
     public int getSectionCount() {
-        Set<String> sections = new HashSet<>();
-        for (String key : dictionary.keySet()) {
-            String section = key.split(":")[0];
-            sections.add(section);
-        }
-        return sections.size();
+        return dictionary.sectionCount();
     }
 
     /**
      * Retrieves the name of a section at a specified index.
      *
+     * <p>
+     * Sections are numbered in the order in which they first received an entry.
+     *
      * @param index the index of the section name to retrieve
      * @return the name of the section at the specified index, or {@code null} if the index is out of bounds
      */
     public String getSectionName(int index) {
-        Set<String> sections = new LinkedHashSet<>();
-        for (String key : dictionary.keySet()) {
-            String section = key.split(":")[0];
-            sections.add(section);
-        }
-        return index < sections.size() ? new ArrayList<>(sections).get(index) : null;
+        return dictionary.sectionName(index);
+    }
+
+    /**
+     * Counts the number of entries within a section.
+     *
+     * @param section the name of the section
+     * @return the number of entries in the section, or 0 if the section does not exist
+     */
+    public int getSectionKeyCount(String section) {
+        return dictionary.sectionKeys(section.toLowerCase()).size();
+    }
+
+    /**
+     * Retrieves the keys of all entries within a section.
+     *
+     * @param section the name of the section
+     * @return an unmodifiable set of the section's full {@code section:key} entry names, in the
+     *         order they were added, or an empty set if the section does not exist
+     */
+    public Set<String> getSectionKeys(String section) {
+        return dictionary.sectionKeys(section.toLowerCase());
+    }
+
+    /**
+     * Lists the entries whose names start with a prefix, such as all entries of a section.
+     *
+     * <p>
+     * Ordered queries use a sorted index of the entry names that is built on first use and
+     * rebuilt only after entries have been added or removed, so the cost of a query is
+     * proportional to the number of matches rather than to the size of the dictionary.
+     *
+     * @param prefix the prefix to match, ignoring case, e.g. {@code "db:"}
+     * @return the matching entry names, in ascending order
+     */
+    public List<String> keysWithPrefix(String prefix) {
+        return dictionary.keyIndex().withPrefix(prefix.toLowerCase());
+    }
+
+    /**
+     * Lists the entries whose names match a glob pattern, in which {@code *} matches any run of
+     * characters and {@code ?} any single character.
+     *
+     * <p>
+     * Only the entries starting with the literal part of the pattern before its first wildcard
+     * are examined, so patterns should start with a literal prefix, e.g. {@code "cache:*.ttl"}.
+     *
+     * @param pattern the pattern to match, ignoring case
+     * @return the matching entry names, in ascending order
+     */
+    public List<String> keysMatching(String pattern) {
+        return dictionary.keyIndex().matching(pattern.toLowerCase());
+    }
+
+    /**
+     * Lists the entries whose names fall in a range, in lexicographic order.
+     *
+     * @param fromInclusive the lowest name to include, ignoring case, or {@code null} for no lower bound
+     * @param toExclusive   the name before which to stop, ignoring case, or {@code null} for no upper bound
+     * @return the entry names in the range, in ascending order
+     */
+    public List<String> keysInRange(String fromInclusive, String toExclusive) {
+        return dictionary.keyIndex().range(
+                fromInclusive != null ? fromInclusive.toLowerCase() : null,
+                toExclusive != null ? toExclusive.toLowerCase() : null);
     }
 
     /**
@@ -221,7 +626,7 @@ public class INIParser {
      * @return {@code true} if the entry exists, {@code false} otherwise
      */
     public boolean findEntry(String entry) {
-        return dictionary.containsKey(entry.toLowerCase());
+        return dictionary.containsKey(entry);
     }
 
     /**
@@ -230,12 +635,27 @@ public class INIParser {
      * @param entry the entry key
      * @param value the value to associate with the entry
      * @return 0 if set successfully, or -1 if the entry is null or empty
+     * @throws UncheckedIOException if the parser is {@linkplain #loadJournaled(String) journaled}
+     *                              and the change cannot be written to the journal; the change
+     *                              then stays visible in memory, but is not durable
      */
     public int setEntry(String entry, String value) {
         if (entry == null || entry.isEmpty()) {
             return -1;
         }
-        dictionary.put(entry.toLowerCase(), value);
+        INIJournal commit;
+        INIDictionary target = beginWrite();
+        try {
+            INIKeyTable.Entry previous = listeners.isEmpty() ? null : target.entry(entry);
+            boolean unchanged = previous != null && Objects.equals(previous.value(), value);
+            INIKeyTable.Entry updated = target.put(entry, value);
+            commit = journal(entry, value, false);
+            publish(target);
+            if (!unchanged) changed(Collections.singleton(updated.key));
+        } finally {
+            endWrite();
+        }
+        if (commit != null) commitJournal(commit);
         return 0;
     }
 
@@ -243,9 +663,538 @@ public class INIParser {
      * Removes an entry from the dictionary if it exists.
      *
      * @param entry the entry to remove
+     * @throws UncheckedIOException if the parser is {@linkplain #loadJournaled(String) journaled}
+     *                              and the change cannot be written to the journal; the change
+     *                              then stays visible in memory, but is not durable
      */
     public void unsetEntry(String entry) {
-        dictionary.remove(entry.toLowerCase());
+        INIJournal commit;
+        INIDictionary target = beginWrite();
+        try {
+            INIKeyTable.Entry removed = target.remove(entry);
+            commit = journal(entry, null, true);
+            publish(target);
+            if (removed != null) changed(Collections.singleton(removed.key));
+        } finally {
+            endWrite();
+        }
+        if (commit != null) commitJournal(commit);
+    }
+
+    // Records a write in the journal, if any, holding the write lock. Returns the journal to
+    // commit once the lock is released, or null if there is none or a batch commits later.
+    private INIJournal journal(String key, String value, boolean unset) {
+        INIJournal log = journal;
+        if (log == null) return null;
+        if (pending != null) staged.add(() -> log.append(key, value, unset));
+        else log.append(key, value, unset);
+        return batchDepth == 0 ? log : null;
+    }
+
+    private static void commitJournal(INIJournal log) {
+        try {
+            log.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs a group of writes so that they become visible together.
+     *
+     * <p>
+     * In concurrent mode, every {@link #setEntry}, {@link #unsetEntry} and load performed by
+     * {@code writes} on the calling thread is applied to a single working copy, which is published
+     * as one snapshot when {@code writes} returns. Other writers wait until the batch completes,
+     * and readers keep seeing the previous snapshot until then. If {@code writes} throws, none of
+     * its changes are published. Outside concurrent mode the writes are simply run in place.
+     *
+     * <p>
+     * If the parser is {@linkplain #loadJournaled(String) journaled}, the writes of the batch are
+     * forced to the journal together, once the batch completes. If that fails, an
+     * {@code UncheckedIOException} is thrown after the writes have been published, so they stay
+     * visible in memory without being durable.
+     *
+     * @param writes the writes to apply
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * parser.batch(() -> {
+     *     parser.setEntry("wine:grape", "Merlot");
+     *     parser.setEntry("wine:year", "2001");
+     *     parser.unsetEntry("wine:alcohol");
+     * });
+     * }</pre>
+     */
+    public void batch(Runnable writes) {
+        if (!concurrent) {
+            batchDepth++;
+            try {
+                writes.run();
+            } finally {
+                batchDepth--;
+            }
+            INIJournal log = journal;
+            if (batchDepth == 0 && log != null) commitJournal(log);
+            return;
+        }
+        INIJournal log;
+        writeLock.lock();
+        try {
+            if (pending != null) {
+                writes.run();
+                return;
+            }
+            pending = dictionary.copy();
+            batchDepth++;
+            try {
+                writes.run();
+                for (Runnable record : staged) record.run();
+                dictionary = pending;
+                if (stagedLoad) interpolation = null;
+                published(stagedChanges);
+            } finally {
+                pending = null;
+                batchDepth--;
+                staged.clear();
+                stagedChanges.clear();
+                stagedLoad = false;
+            }
+            log = journal;
+        } finally {
+            writeLock.unlock();
+        }
+        if (log != null) commitJournal(log);
+    }
+
+    /**
+     * Applies a group of sets and unsets as one atomic change.
+     *
+     * <p>
+     * {@code changes} records the changes on an {@link INITransaction} without holding any lock,
+     * and each change is validated as it is recorded, so if {@code changes} throws, nothing is
+     * applied. The recorded changes are then applied in order in a single pass: in concurrent
+     * mode to one copy of the dictionary, which is published as one snapshot, so readers see
+     * either none or all of them. If the parser is {@linkplain #loadJournaled(String) journaled},
+     * the changes are forced to the journal together. Inside a {@link #batch} the changes join
+     * the batch.
+     *
+     * @param changes records the changes to apply
+     * @return the keys whose value was added, removed or changed by the update
+     * @throws IllegalArgumentException if a recorded entry name is invalid; nothing is applied
+     * @throws UncheckedIOException     if the parser is journaled and the changes cannot be
+     *                                  written to the journal; the changes then stay visible in
+     *                                  memory, but are not durable
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * Set<String> changed = parser.update(tx -> {
+     *     tx.set("wine:grape", "Merlot");
+     *     tx.set("wine:year", "2001");
+     *     tx.unset("wine:alcohol");
+     * });
+     * }</pre>
+     */
+    public Set<String> update(Consumer<INITransaction> changes) {
+        INITransaction tx = new INITransaction();
+        List<INITransaction.Change> recorded;
+        try {
+            changes.accept(tx);
+        } finally {
+            recorded = tx.close();
+        }
+        if (recorded.isEmpty()) return Collections.emptySet();
+
+        // Value of each touched key before the update, or ABSENT if it did not exist.
+        Map<String, Object> before = new HashMap<>(recorded.size() * 2);
+        Set<String> changed = new HashSet<>();
+        INIJournal commit = null;
+        INIDictionary target = beginWrite();
+        try {
+            for (INITransaction.Change change : recorded) {
+                INIJournal log = journal(change.key, change.value, change.unset);
+                if (log != null) commit = log;
+                INIKeyTable.Entry entry;
+                if (change.unset) {
+                    entry = target.remove(change.key);
+                    if (entry == null) continue;
+                    before.putIfAbsent(entry.key, entry.value() != null ? entry.value() : NULL);
+                } else {
+                    entry = target.entry(change.key);
+                    if (entry != null) {
+                        before.putIfAbsent(entry.key, entry.value() != null ? entry.value() : NULL);
+                        entry.setValue(change.value);
+                    } else {
+                        entry = target.put(change.key, change.value);
+                        before.putIfAbsent(entry.key, ABSENT);
+                    }
+                }
+            }
+            for (Map.Entry<String, Object> touched : before.entrySet()) {
+                INIKeyTable.Entry entry = target.entry(touched.getKey());
+                Object previous = touched.getValue();
+                Object now = entry == null ? ABSENT : entry.value() != null ? entry.value() : NULL;
+                if (!previous.equals(now)) changed.add(touched.getKey());
+            }
+            publish(target);
+            changed(changed);
+        } finally {
+            endWrite();
+        }
+        if (commit != null) commitJournal(commit);
+        return changed;
+    }
+
+    /**
+     * Loads an INI file together with its journal, and journals every later {@link #setEntry}
+     * and {@link #unsetEntry} so that each is durable when it returns.
+     *
+     * <p>
+     * The entries of the file, if it exists, are added to the dictionary, then the records of
+     * the journal next to it, if any, are replayed over them. From then on every set or unset
+     * appends a record to the journal instead of requiring the whole file to be rewritten, and
+     * the journal is compacted into the file once it exceeds 4 MiB. See {@link INIJournal}.
+     *
+     * @param fileName the name of the INI file; the journal is {@code fileName + ".journal"}
+     * @return the journal, to be closed when the parser is no longer written
+     * @throws IOException           if the file or the journal cannot be read, or the journal
+     *                               cannot be opened for writing
+     * @throws IllegalStateException if the parser is already journaled
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * INIParser parser = new INIParser(true);
+     * try (INIJournal journal = parser.loadJournaled("config.ini")) {
+     *     parser.setEntry("wine:year", "2001"); // durable when it returns
+     * }
+     * }</pre>
+     */
+    public INIJournal loadJournaled(String fileName) throws IOException {
+        return loadJournaled(fileName, 4L << 20);
+    }
+
+    /**
+     * Like {@link #loadJournaled(String)}, compacting the journal into the file once it exceeds
+     * {@code compactionThreshold} bytes.
+     *
+     * @param fileName            the name of the INI file
+     * @param compactionThreshold the journal size that triggers a compaction
+     * @return the journal, to be closed when the parser is no longer written
+     * @throws IOException           if the file or the journal cannot be read, or the journal
+     *                               cannot be opened for writing
+     * @throws IllegalStateException if the parser is already journaled
+     */
+    public INIJournal loadJournaled(String fileName, long compactionThreshold) throws IOException {
+        Path base = Paths.get(fileName).toAbsolutePath();
+        INIDictionary target = beginWrite();
+        try {
+            if (journal != null) throw new IllegalStateException("Parser is already journaled");
+            if (Files.exists(base)) {
+                ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(base));
+                new INIByteScanner().scan(content, 0, content.limit(), true, new DictionarySink(target));
+            }
+            INIJournal opened = INIJournal.open(this, base, compactionThreshold, concurrent, (key, value, unset) -> {
+                if (unset) target.remove(key);
+                else target.put(key, value);
+            });
+            journal = opened;
+            publishLoad(target);
+            return opened;
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Runs action while no write is in progress, so the dictionary matches the journal.
+    <T> T whileNotWriting(Supplier<T> action) {
+        if (concurrent) writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            if (concurrent) writeLock.unlock();
+        }
+    }
+
+    void detachJournal(INIJournal log) {
+        if (concurrent) writeLock.lock();
+        try {
+            if (journal == log) journal = null;
+        } finally {
+            if (concurrent) writeLock.unlock();
+        }
+    }
+
+    /**
+     * Re-reads an INI file and atomically replaces the whole dictionary with its contents.
+     *
+     * <p>
+     * The file is parsed into a new dictionary first and swapped in only if it could be read and
+     * contains no syntax errors; otherwise the current dictionary is kept unchanged. In concurrent
+     * mode readers therefore see either the old or the new contents, never a partially loaded
+     * dictionary. Entries set with {@link #setEntry} that are not in the file are discarded.
+     * The file must be UTF-8 encoded.
+     *
+     * @param fileName the name of the INI file to parse
+     * @return the keys whose value was added, removed or changed by the reload
+     * @throws IOException if the file cannot be read or contains syntax errors
+     */
+    public Set<String> reload(String fileName) throws IOException {
+        INIDictionary fresh = new INIDictionary();
+        DictionarySink sink = new DictionarySink(fresh);
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+        new INIByteScanner().scan(content, 0, content.limit(), true, sink);
+        if (sink.errors > 0) {
+            throw new IOException(sink.errors + " syntax error(s) in " + fileName + ", reload rejected");
+        }
+
+        INIDictionary previous;
+        if (concurrent) writeLock.lock();
+        try {
+            if (pending != null) {
+                previous = pending;
+                pending = fresh;
+            } else {
+                previous = dictionary;
+                dictionary = fresh;
+            }
+        } finally {
+            endWrite();
+        }
+        Set<String> changed = INIDictionary.changedKeys(previous, fresh);
+        changed(changed);
+        return changed;
+    }
+
+    /**
+     * Re-reads an INI file, re-parsing only the sections whose bytes changed since the previous
+     * call for the same file, and patches the dictionary in place.
+     *
+     * <p>
+     * The first call for a file parses all of it, merges its entries into the dictionary like
+     * {@link #load(String)} and records the file's layout: the byte offset, length and checksum of
+     * every section. Later calls compare the file against that layout and parse only the sections
+     * that were added or modified. Keys defined by changed or removed sections are then updated
+     * or removed; all other entries, including those set with {@link #setEntry}, are left as they
+     * are. If the file cannot be read or a re-parsed section contains syntax errors, neither the
+     * dictionary nor the recorded layout is changed. The file must be UTF-8 encoded.
+     *
+     * @param fileName the name of the INI file to parse
+     * @return the keys whose value was added, removed or changed in the dictionary
+     * @throws IOException if the file cannot be read or contains syntax errors
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * parser.reloadIncremental("huge.ini");                  // full parse, layout recorded
+     * // ... a deploy edits a few lines of huge.ini ...
+     * Set<String> changed = parser.reloadIncremental("huge.ini"); // parses the edited sections only
+     * }</pre>
+     */
+    public Set<String> reloadIncremental(String fileName) throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(path));
+
+        INIDictionary target = beginWrite();
+        try {
+            INISectionLayout layout = INISectionLayout.build(content, layouts.get(path), errorCallback);
+            if (layout.errors() > 0) {
+                throw new IOException(layout.errors() + " syntax error(s) in " + fileName + ", reload rejected");
+            }
+
+            Set<String> changed = new HashSet<>();
+            for (String key : layout.candidates()) {
+                String value = layout.resolve(key);
+                if (value != null) {
+                    if (!target.containsKey(key) || !value.equals(target.get(key))) {
+                        target.put(key, value);
+                        changed.add(key);
+                    }
+                } else if (target.containsKey(key)) {
+                    target.remove(key);
+                    changed.add(key);
+                }
+            }
+            layouts.put(path, layout);
+            publish(target);
+            changed(changed);
+            return changed;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Watches an INI file and {@linkplain #reload(String) reloads} it whenever it changes.
+     *
+     * <p>
+     * Change events are debounced: the file is reloaded on a background thread once no further
+     * change has been seen for {@code debounceMillis}, so an editor writing the file in several
+     * steps triggers a single reload. Failed reloads are reported to the error callback and leave
+     * the dictionary unchanged. Closing the returned watcher stops watching.
+     *
+     * @param fileName       the name of the INI file to watch
+     * @param debounceMillis how long the file must stay unchanged before it is reloaded
+     * @param onReload       receives the changed keys after every successful reload that changed
+     *                       at least one key
+     * @return the running watcher
+     * @throws IOException           if the file's directory cannot be watched
+     * @throws IllegalStateException if this parser is not in concurrent mode
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * INIParser parser = new INIParser(true);
+     * parser.load("config.ini");
+     * try (INIFileWatcher watcher = parser.watch("config.ini", 200,
+     *         changed -> System.out.println("Reloaded: " + changed))) {
+     *     // serve requests; parser.getString(...) always sees a complete dictionary
+     * }
+     * }</pre>
+     */
+    public INIFileWatcher watch(String fileName, long debounceMillis, Consumer<Set<String>> onReload)
+            throws IOException {
+        if (!concurrent) {
+            throw new IllegalStateException("Watching requires an INIParser in concurrent mode");
+        }
+        return new INIFileWatcher(Paths.get(fileName), debounceMillis, () -> {
+            try {
+                Set<String> changed = reload(fileName);
+                if (!changed.isEmpty()) onReload.accept(changed);
+            } catch (IOException e) {
+                errorCallback.println("Reload of " + fileName + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Subscribes a listener to changes of one entry.
+     *
+     * <p>
+     * The listener is called when {@link #setEntry}, {@link #unsetEntry}, {@link #update},
+     * {@link #reload} or {@link #reloadIncremental} adds, removes or changes the value of the
+     * entry; loads do not notify. Calls are made asynchronously on a background thread, and
+     * changes made while a call is pending are coalesced into one call, so a burst of writes
+     * does not flood the listener. In concurrent mode the changes of a {@link #batch} are
+     * delivered once it publishes, and not at all if it fails. See {@link INISubscription}.
+     *
+     * @param entry    the entry to listen to, matched ignoring case
+     * @param listener receives the changed keys, in lowercase
+     * @return the subscription, to be closed to stop listening
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * INISubscription subscription = parser.subscribe("wine:year",
+     *         changed -> System.out.println("Year is now " + parser.getInt("wine:year", -1)));
+     * parser.setEntry("wine:year", "2001");
+     * subscription.close();
+     * }</pre>
+     */
+    public INISubscription subscribe(String entry, Consumer<Set<String>> listener) {
+        return listeners.add(entry, false, listener);
+    }
+
+    /**
+     * Subscribes a listener to changes of the entries of one section, like
+     * {@link #subscribe(String, Consumer)}.
+     *
+     * @param section  the section to listen to, matched ignoring case; {@code ""} for entries
+     *                 outside any section
+     * @param listener receives the changed keys of the section, in lowercase
+     * @return the subscription, to be closed to stop listening
+     */
+    public INISubscription subscribeSection(String section, Consumer<Set<String>> listener) {
+        return listeners.add(section, true, listener);
+    }
+
+    // Reports keys changed by a published write, or holds them back until the running concurrent
+    // batch publishes.
+    private void changed(Collection<String> keys) {
+        if (keys.isEmpty()) return;
+        if (concurrent) writeLock.lock();
+        try {
+            if (pending != null) stagedChanges.addAll(keys);
+            else published(keys);
+        } finally {
+            endWrite();
+        }
+    }
+
+    // Brings the interpolated values up to date with published changes and notifies the
+    // subscribers. Called holding the write lock in concurrent mode.
+    private void published(Collection<String> keys) {
+        INIInterpolation resolved = interpolation;
+        if (resolved != null) resolved.changed(keys, dictionary);
+        listeners.dispatch(keys);
+    }
+
+    // Returns the map a write should modify: the live dictionary, or in concurrent mode the
+    // batch's working copy or a fresh copy of the current snapshot. Must be paired with endWrite().
+    private INIDictionary beginWrite() {
+        if (!concurrent) return dictionary;
+        writeLock.lock();
+        return pending != null ? pending : dictionary.copy();
+    }
+
+    // Makes a completed write visible, unless it is part of a batch.
+    private Map<String, String> publish(INIDictionary target) {
+        if (concurrent && pending == null) dictionary = target;
+        return target.asMap();
+    }
+
+    // Like publish(), for a load, which may change any key: interpolated values are discarded.
+    private Map<String, String> publishLoad(INIDictionary target) {
+        if (pending != null) stagedLoad = true;
+        else interpolation = null;
+        return publish(target);
+    }
+
+    private void endWrite() {
+        if (concurrent) writeLock.unlock();
+    }
+
+    // The current entries, for the classes that compile or serialize a parser's dictionary.
+    Map<String, String> entries() {
+        return dictionary.asMap();
+    }
+
+    /**
+     * Writes the dictionary as INI text that {@link #load(String)} reads back into the same entries.
+     *
+     * <p>
+     * Entries are grouped by section, sections in the order they first received a key and keys in
+     * the order they were added, with the entries of the unnamed section first. Values with
+     * surrounding whitespace or quotes are written in double quotes so that loading keeps them
+     * intact. Entries that cannot be written as an INI line, such as those whose names contain no
+     * {@code ':'}, whose names or values contain a line break, or whose values are null, are
+     * skipped and reported to the error callback.
+     *
+     * <p>
+     * Text is collected in a large buffer that is passed to {@code out} only when full, so
+     * {@code out} need not be buffered. The writer is flushed but not closed.
+     *
+     * @param out the writer to write to
+     * @return the number of entries written
+     * @throws IOException if writing fails
+     *
+     * <h3>Example Usage:</h3>
+     * <pre>{@code
+     * try (Writer out = Files.newBufferedWriter(Paths.get("config.ini"))) {
+     *     parser.write(out);
+     * }
+     * }</pre>
+     */
+    public int write(Writer out) throws IOException {
+        return new INIWriter(out).write(dictionary, errorCallback);
+    }
+
+    /**
+     * Writes the dictionary as UTF-8 encoded INI text to a channel, such as a
+     * {@link FileChannel}, like {@link #write(Writer)}.
+     *
+     * @param out the channel to write to; it is not closed
+     * @return the number of entries written
+     * @throws IOException if writing fails
+     */
+    public int write(WritableByteChannel out) throws IOException {
+        return new INIWriter(out).write(dictionary, errorCallback);
     }
 
     /**
@@ -254,7 +1203,7 @@ public class INIParser {
      * @param out the PrintStream to write dictionary contents to, e.g., {@code System.out}
      */
     public void dump(PrintStream out) {
-        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+        for (Map.Entry<String, String> entry : dictionary.asMap().entrySet()) {
             out.println("[" + entry.getKey() + "]=" + entry.getValue());
         }
     }
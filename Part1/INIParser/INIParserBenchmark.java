@@ -0,0 +1,318 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Benchmark harness for the hot paths of {@link INIParser}.
+ *
+ * <p>
+ * Every benchmark runs against generated INI corpora of several sizes and shapes (number of
+ * sections, key length and comment density). Each benchmark is warmed up, then measured over a
+ * number of timed iterations. For every benchmark and corpus the harness reports the time per
+ * operation, the throughput, and, like JMH's {@code -prof gc}, the bytes allocated per operation
+ * and the garbage collections that happened while measuring.
+ *
+ * <p>
+ * Results are written as CSV so that they can be kept as a baseline and compared with a later
+ * run; the comparison flags every benchmark that became slower or allocates more than a given
+ * threshold, and exits with status 1 if there are any.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>
+ * java INIParserBenchmark --sizes 1K,1M,64M --out baseline.csv
+ * java -Xmx16g INIParserBenchmark --sizes 1K,1M,64M,1G --out full.csv
+ * java INIParserBenchmark --sizes 1K,1M,64M --out current.csv --compare baseline.csv --threshold 0.10
+ * </pre>
+ */
+public class INIParserBenchmark {
+
+    private static final String CSV_HEADER = "benchmark,corpus,ops,ns_per_op,ops_per_sec,bytes_per_op,gc_count,gc_ms";
+
+    // Larger corpora are not held in memory as a single String for loadFromReader.
+    private static final long MAX_IN_MEMORY = 256L << 20;
+
+    private static final int LOOKUP_KEYS = 1024;
+
+    private static volatile long sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private INIParserBenchmark(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * The shape of a generated corpus.
+     */
+    private static final class Shape {
+        final String name;
+        final int keysPerSection;
+        final int keyLength;
+        final double commentDensity;
+
+        Shape(String name, int keysPerSection, int keyLength, double commentDensity) {
+            this.name = name;
+            this.keysPerSection = keysPerSection;
+            this.keyLength = keyLength;
+            this.commentDensity = commentDensity;
+        }
+    }
+
+    private static final Shape[] SHAPES = {
+        new Shape("wide", 1000, 8, 0.0),
+        new Shape("narrow", 10, 16, 0.1),
+        new Shape("commented", 100, 40, 0.5),
+    };
+
+    /**
+     * One measured benchmark on one corpus.
+     */
+    private static final class Result {
+        final String benchmark;
+        final String corpus;
+        final long ops;
+        final double nsPerOp;
+        final double bytesPerOp;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String benchmark, String corpus, long ops, double nsPerOp, double bytesPerOp,
+               long gcCount, long gcMillis) {
+            this.benchmark = benchmark;
+            this.corpus = corpus;
+            this.ops = ops;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%.2f,%.2f,%.2f,%d,%d",
+                    benchmark, corpus, ops, nsPerOp, 1e9 / nsPerOp, bytesPerOp, gcCount, gcMillis);
+        }
+    }
+
+    private interface Operation {
+        long run(int i) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String sizes = "1K,64K,1M,16M";
+        String out = "ini-benchmark.csv";
+        String compare = null;
+        double threshold = 0.10;
+        int warmup = 3, iterations = 5;
+        long iterationMillis = 1000;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[++i]; break;
+                case "--out": out = args[++i]; break;
+                case "--compare": compare = args[++i]; break;
+                case "--threshold": threshold = Double.parseDouble(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--iteration-ms": iterationMillis = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("INIParserBenchmark: unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        INIParser.setErrorCallback(new PrintStream(OutputStream.nullOutputStream()));
+        INIParserBenchmark benchmark = new INIParserBenchmark(warmup, iterations, iterationMillis);
+        List<Result> results = new ArrayList<>();
+        Path dir = Files.createTempDirectory("ini-benchmark");
+        try {
+            for (String size : sizes.split(",")) {
+                for (Shape shape : SHAPES) {
+                    Path corpus = dir.resolve(size + "-" + shape.name + ".ini");
+                    generate(corpus, parseSize(size), shape);
+                    results.addAll(benchmark.runAll(corpus, size + "-" + shape.name));
+                    Files.delete(corpus);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+            writer.println(CSV_HEADER);
+            for (Result result : results) writer.println(result.toCsv());
+        }
+        System.out.println("INIParserBenchmark: results written to " + out);
+
+        if (compare != null && compare(readBaseline(Paths.get(compare)), results, threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private List<Result> runAll(Path corpus, String name) throws IOException {
+        String file = corpus.toString();
+        long bytes = Files.size(corpus);
+        List<Result> results = new ArrayList<>();
+
+        results.add(measure("load", name, i -> new INIParser().load(file).size()));
+        results.add(measure("loadMapped", name, i -> new INIParser().loadMapped(file).size()));
+        results.add(measure("loadParallel", name, i -> new INIParser().loadParallel(file).size()));
+        if (bytes <= MAX_IN_MEMORY) {
+            String content = Files.readString(corpus);
+            results.add(measure("loadFromReader", name, i ->
+                    new INIParser().loadFromReader(new BufferedReader(new StringReader(content))).size()));
+        }
+
+        INIParser parser = new INIParser();
+        parser.load(file);
+        List<String> all = new ArrayList<>(parser.entries().keySet());
+        Collections.shuffle(all, new Random(42));
+        String[] keys = all.subList(0, Math.min(LOOKUP_KEYS, all.size())).toArray(new String[0]);
+        int mask = Integer.highestOneBit(Math.max(1, keys.length)) - 1;
+        int sections = Math.max(1, parser.getSectionCount());
+
+        results.add(measure("getString", name, i -> parser.getString(keys[i & mask], "").length()));
+        results.add(measure("getInt", name, i -> parser.getInt(keys[i & mask], -1)));
+        results.add(measure("getBoolean", name, i -> parser.getBoolean(keys[i & mask], false) ? 1 : 0));
+        results.add(measure("getSectionCount", name, i -> parser.getSectionCount()));
+        results.add(measure("getSectionName", name, i -> parser.getSectionName(i % sections).length()));
+
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        results.add(measure("dump", name, i -> {
+            parser.dump(nowhere);
+            return 0;
+        }));
+        return results;
+    }
+
+    private Result measure(String benchmark, String corpus, Operation operation) throws IOException {
+        for (int w = 0; w < warmupIterations; w++) iterate(operation);
+
+        long ops = 0, nanos = 0, allocated = 0;
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+        for (int m = 0; m < iterations; m++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long count = iterate(operation);
+            nanos += System.nanoTime() - start;
+            allocated += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            ops += count;
+        }
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+
+        Result result = new Result(benchmark, corpus, ops, (double) nanos / ops, (double) allocated / ops,
+                gcCount, gcMillis);
+        System.out.println(result.toCsv());
+        return result;
+    }
+
+    // Runs the operation in batches until the iteration time is used up; returns the op count.
+    private long iterate(Operation operation) throws IOException {
+        long deadline = System.nanoTime() + iterationNanos;
+        long ops = 0, accumulated = 0;
+        int batch = 1;
+        do {
+            for (int i = 0; i < batch; i++) accumulated += operation.run((int) ops + i);
+            ops += batch;
+            if (batch < 1 << 16) batch <<= 1;
+        } while (System.nanoTime() < deadline);
+        sink += accumulated;
+        return ops;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Writes a corpus of roughly {@code size} bytes with the given shape.
+     */
+    private static void generate(Path file, long size, Shape shape) throws IOException {
+        Random random = new Random(size * 31 + shape.name.hashCode());
+        long written = 0;
+        int section = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file)), 1 << 16)) {
+            while (written < size) {
+                String header = "[section" + section++ + "]\n";
+                writer.write(header);
+                written += header.length();
+                for (int k = 0; k < shape.keysPerSection && written < size; k++) {
+                    StringBuilder line = new StringBuilder();
+                    if (random.nextDouble() < shape.commentDensity) {
+                        line.append("; comment about the next entry, number ").append(k).append('\n');
+                    }
+                    line.append("Key").append(k).append('_');
+                    while (line.length() < shape.keyLength + 4) line.append((char) ('a' + random.nextInt(26)));
+                    line.append(" = ");
+                    switch (k % 3) {
+                        case 0: line.append(random.nextInt(100000)); break;
+                        case 1: line.append(random.nextBoolean() ? "yes" : "FALSE"); break;
+                        default: line.append("\"value ").append(random.nextLong()).append('"'); break;
+                    }
+                    line.append('\n');
+                    writer.write(line.toString());
+                    written += line.length();
+                }
+            }
+        }
+    }
+
+    private static long parseSize(String size) {
+        char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        long multiplier = unit == 'K' ? 1L << 10 : unit == 'M' ? 1L << 20 : unit == 'G' ? 1L << 30 : 1;
+        String digits = multiplier == 1 ? size : size.substring(0, size.length() - 1);
+        return Long.parseLong(digits) * multiplier;
+    }
+
+    private static Map<String, String[]> readBaseline(Path file) throws IOException {
+        Map<String, String[]> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isEmpty() || line.equals(CSV_HEADER)) continue;
+            String[] fields = line.split(",");
+            baseline.put(fields[0] + "," + fields[1], fields);
+        }
+        return baseline;
+    }
+
+    // Prints the change of every result present in the baseline; returns the regression count.
+    private static int compare(Map<String, String[]> baseline, List<Result> results, double threshold) {
+        int regressions = 0;
+        System.out.println("benchmark,corpus,time_change,alloc_change,status");
+        for (Result result : results) {
+            String[] old = baseline.get(result.benchmark + "," + result.corpus);
+            if (old == null) continue;
+            double timeChange = result.nsPerOp / Double.parseDouble(old[3]) - 1;
+            double oldBytes = Double.parseDouble(old[5]);
+            double allocChange = oldBytes == 0 ? (result.bytesPerOp == 0 ? 0 : 1) : result.bytesPerOp / oldBytes - 1;
+            boolean regressed = timeChange > threshold || allocChange > threshold;
+            if (regressed) regressions++;
+            System.out.println(String.format(Locale.ROOT, "%s,%s,%+.1f%%,%+.1f%%,%s", result.benchmark,
+                    result.corpus, timeChange * 100, allocChange * 100, regressed ? "REGRESSION" : "ok"));
+        }
+        System.out.println("INIParserBenchmark: " + regressions + " regression(s) above "
+                + Math.round(threshold * 100) + "%");
+        return regressions;
+    }
+}
@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of {@link INIParser}s keyed by file, bounded by the memory the parsers retain.
+ *
+ * <p>
+ * {@link #get(String)} returns the parser of a file, loading it on first use. Parsers are
+ * created in concurrent mode, so one parser can be shared by all threads that request the
+ * same file. When several threads request a file that is not cached, one of them loads it and
+ * the others wait for that load instead of parsing the file again.
+ *
+ * <p>
+ * The estimated heap retained by all cached parsers is kept below a limit by evicting the least
+ * recently used parsers. A parser evicted or replaced while a caller still holds it stays
+ * usable; it is simply no longer returned by the cache.
+ *
+ * <p>
+ * A cached parser is stale once its file's size or modification time changes. To keep lookups
+ * cheap, the file is checked at most once per {@code staleCheckMillis}; a stale parser is then
+ * replaced by a fresh load of the file.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> This class is safe for concurrent use.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIParserCache cache = new INIParserCache(256L << 20, 5000); // 256 MiB, check files every 5 s
+ * INIParser tenant = cache.get("tenants/acme.ini");
+ * int quota = tenant.getInt("limits:quota", 100);
+ * }</pre>
+ */
+public final class INIParserCache {
+
+    private static final class Node {
+        final CompletableFuture<INIParser> parser = new CompletableFuture<>();
+        FileTime stamp;       // size and mtime of the loaded file, set once loaded
+        long weight;          // estimated retained bytes, 0 while loading
+        volatile long checkedAt;
+    }
+
+    // Size and modification time, compared to detect a changed file.
+    private static final class FileTime {
+        final long size;
+        final long modified;
+
+        FileTime(BasicFileAttributes attributes) {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+        }
+
+        boolean sameAs(FileTime other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+
+    private final long maxRetainedBytes;
+    private final long staleCheckNanos;
+
+    // Access-ordered: iteration starts at the least recently used file. Guarded by itself.
+    private final LinkedHashMap<Path, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxRetainedBytes the estimated heap the cached parsers may retain in total
+     * @param staleCheckMillis the minimum time between two checks of a cached file for changes,
+     *                         0 to check on every lookup
+     * @throws IllegalArgumentException if {@code maxRetainedBytes} is not positive or
+     *                                  {@code staleCheckMillis} is negative
+     */
+    public INIParserCache(long maxRetainedBytes, long staleCheckMillis) {
+        if (maxRetainedBytes <= 0) throw new IllegalArgumentException("maxRetainedBytes must be positive");
+        if (staleCheckMillis < 0) throw new IllegalArgumentException("staleCheckMillis must not be negative");
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.staleCheckNanos = TimeUnit.MILLISECONDS.toNanos(staleCheckMillis);
+    }
+
+    /**
+     * Returns the parser of an INI file, loading the file if it is not cached or has changed.
+     *
+     * @param fileName the name of the INI file
+     * @return the parser holding the file's entries
+     * @throws IOException if the file cannot be read; nothing is cached for it then
+     */
+    public INIParser get(String fileName) throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+        Node node;
+        boolean load = false;
+        synchronized (nodes) {
+            node = nodes.get(path);
+            if (node == null) {
+                node = new Node();
+                nodes.put(path, node);
+                load = true;
+            }
+        }
+
+        if (load) {
+            misses.increment();
+            return load(path, node);
+        }
+        // A failed load has no stamp to check; its waiters get its exception from join().
+        if (node.parser.isDone() && !node.parser.isCompletedExceptionally() && isStale(path, node)) {
+            Node fresh = null;
+            synchronized (nodes) {
+                // Only the first thread to see the stale node replaces it.
+                if (nodes.get(path) == node) {
+                    fresh = new Node();
+                    nodes.put(path, fresh);
+                    retainedBytes -= node.weight;
+                }
+            }
+            if (fresh != null) {
+                misses.increment();
+                return load(path, fresh);
+            }
+            return get(fileName);
+        }
+        hits.increment();
+        return join(node);
+    }
+
+    /**
+     * Removes the parser of a file from the cache.
+     *
+     * @param fileName the name of the INI file
+     */
+    public void invalidate(String fileName) {
+        Path path = Paths.get(fileName).toAbsolutePath().normalize();
+        synchronized (nodes) {
+            Node node = nodes.remove(path);
+            if (node != null) retainedBytes -= node.weight;
+        }
+    }
+
+    /**
+     * Removes all parsers from the cache. The hit, miss and eviction counts are kept.
+     */
+    public void invalidateAll() {
+        synchronized (nodes) {
+            nodes.clear();
+            retainedBytes = 0;
+        }
+    }
+
+    /**
+     * Returns the number of files cached or being loaded.
+     *
+     * @return the number of files
+     */
+    public int size() {
+        synchronized (nodes) {
+            return nodes.size();
+        }
+    }
+
+    /**
+     * Returns the estimated heap retained by the cached parsers.
+     *
+     * @return the estimate in bytes
+     */
+    public long getRetainedBytes() {
+        synchronized (nodes) {
+            return retainedBytes;
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered by a cached parser or by a load already in progress.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that loaded a file, because it was not cached or had changed.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of parsers evicted to respect the retained bytes limit.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private INIParser load(Path path, Node node) throws IOException {
+        INIParser parser;
+        FileTime stamp;
+        try {
+            // Stat first: a change made while reading is then caught by the next check.
+            stamp = new FileTime(Files.readAttributes(path, BasicFileAttributes.class));
+            parser = new INIParser(true);
+            parser.loadBytes(Files.readAllBytes(path));
+        } catch (IOException | RuntimeException e) {
+            synchronized (nodes) {
+                nodes.remove(path, node);
+            }
+            node.parser.completeExceptionally(e);
+            throw e;
+        }
+
+        long weight = parser.current().retainedBytes();
+        synchronized (nodes) {
+            node.stamp = stamp;
+            node.checkedAt = System.nanoTime();
+            if (nodes.get(path) == node) {
+                node.weight = weight;
+                retainedBytes += weight;
+                evict();
+            }
+        }
+        node.parser.complete(parser);
+        return parser;
+    }
+
+    // Drops least recently used loaded parsers until the limit is met. Called holding the lock.
+    private void evict() {
+        for (Iterator<Node> it = nodes.values().iterator(); retainedBytes > maxRetainedBytes && it.hasNext(); ) {
+            Node node = it.next();
+            if (node.weight == 0) continue;
+            it.remove();
+            retainedBytes -= node.weight;
+            evictions.increment();
+        }
+    }
+
+    private boolean isStale(Path path, Node node) {
+        long now = System.nanoTime();
+        if (now - node.checkedAt < staleCheckNanos) return false;
+        node.checkedAt = now;
+        FileTime stamp;
+        synchronized (nodes) {
+            stamp = node.stamp;
+        }
+        try {
+            return !new FileTime(Files.readAttributes(path, BasicFileAttributes.class)).sameAs(stamp);
+        } catch (IOException e) {
+            return true; // deleted or unreadable: let a fresh load report it
+        }
+    }
+
+    private static INIParser join(Node node) throws IOException {
+        try {
+            return node.parser.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw new IOException(cause.getMessage(), cause);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+}
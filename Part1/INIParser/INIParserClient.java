@@ -73,8 +73,7 @@ public class INIParserClient {
             System.out.println("Year:      [" + year + "]");
             String country = parser.getString("wine:country", "UNDEF");
             System.out.println("Country:   [" + country + "]");
-            String alcoholStr = parser.getString("wine:alcohol", "-1.0");
-            double alcohol = Double.parseDouble(alcoholStr);
+            double alcohol = parser.getDouble("wine:alcohol", -1.0);
             System.out.println("Alcohol:   [" + alcohol + "]");
     
             return 0;
@@ -87,33 +86,31 @@ public class INIParserClient {
 
     /**
      * Writes example entries to an INI file, creating sections and key-value pairs.
+     * Comments and all other lines of the file are kept as they are.
      *
      * @param iniName The name of the INI file to write to.
      * @return 0 on success, -1 on failure.
      */
     private static int writeToIniFile(String iniName) {
-        INIParser parser = new INIParser();
-
+        INIDocument document;
         try {
-            parser.load(iniName);
-
-            // Set a section and key/value pair
-            parser.setEntry("Pizza", null);
-            parser.setEntry("Pizza:Cheese", "TRUE");
-
-            try (PrintStream out = new PrintStream(new FileOutputStream(iniName))) {
-                parser.dump(out);
-            } catch (IOException e) {
-                System.err.println("INIParserClient: Cannot write to file: " + iniName);
-                return -1;
-            }
+            document = INIDocument.open(iniName);
+        } catch (IOException e) {
+            System.err.println("INIParserClient: Cannot parse file: " + iniName);
+            return -1;
+        }
 
-            return 0;
+        // Set a key/value pair, creating its section if needed
+        document.set("Pizza:Cheese", "TRUE");
 
+        try {
+            document.save();
         } catch (IOException e) {
-            System.err.println("INIParserClient: Cannot parse file: " + iniName);
+            System.err.println("INIParserClient: Cannot write to file: " + iniName);
             return -1;
         }
+
+        return 0;
     }
 
     /**
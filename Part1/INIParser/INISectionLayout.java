@@ -0,0 +1,202 @@
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * The section layout of an INI file, used to re-parse only the parts of a file that changed.
+ *
+ * <p>
+ * The file is divided into blocks: an optional leading block holding the lines before the first
+ * section header, followed by one block per section header line that extends up to the next
+ * header line. Each block records its byte offset, its length, a CRC32C of its bytes and the
+ * entries it defines. Parsing a block depends on nothing but its own bytes, so when a new version
+ * of the file is laid out, every block whose length and checksum match a block of the previous
+ * layout reuses that block's entries instead of being parsed again.
+ *
+ * <p>
+ * The value of a key in the file is the value from the last block that defines it. Only keys
+ * defined by blocks that disappeared or were parsed again can have a different value, and they
+ * are reported by {@link #candidates()}. If unchanged blocks were reordered, every key is a
+ * candidate.
+ */
+final class INISectionLayout {
+
+    private static final class Block {
+        final long offset;
+        final int length;
+        final int checksum;
+        final String section;
+        final Map<String, String> entries;
+
+        Block(long offset, int length, int checksum, String section, Map<String, String> entries) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+            this.section = section;
+            this.entries = entries;
+        }
+
+        long signature() {
+            return INISectionLayout.signature(checksum, length);
+        }
+    }
+
+    private static long signature(int checksum, int length) {
+        return ((long) checksum << 32) | (length & 0xFFFFFFFFL);
+    }
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final Map<String, List<Block>> blocksBySection = new HashMap<>();
+    private final Set<String> candidates = new LinkedHashSet<>();
+    private int errors;
+
+    private INISectionLayout() {
+    }
+
+    /**
+     * Lays out {@code content}, reusing the parsed blocks of {@code previous} where possible.
+     *
+     * @param content  the complete INI file content
+     * @param previous the layout of the previous version of the file, or {@code null}
+     * @param errorOut the stream receiving syntax errors found in re-parsed blocks
+     * @return the new layout
+     */
+    static INISectionLayout build(ByteBuffer content, INISectionLayout previous, PrintStream errorOut) {
+        INISectionLayout layout = new INISectionLayout();
+
+        Map<Long, Deque<Integer>> reusable = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.blocks.size(); i++) {
+                reusable.computeIfAbsent(previous.blocks.get(i).signature(), s -> new ArrayDeque<>()).add(i);
+            }
+        }
+        boolean[] reused = new boolean[previous != null ? previous.blocks.size() : 0];
+        boolean reordered = false;
+        int lastReused = -1;
+
+        INIByteScanner scanner = new INIByteScanner();
+        CRC32C crc = new CRC32C();
+        int end = content.limit();
+        int start = 0;
+        while (start < end) {
+            int next = nextHeader(content, start, end);
+            crc.reset();
+            crc.update(content.slice(start, next - start));
+            int checksum = (int) crc.getValue();
+            Deque<Integer> matches = reusable.get(signature(checksum, next - start));
+            Integer match = matches != null ? matches.poll() : null;
+            Block block;
+            if (match != null) {
+                Block old = previous.blocks.get(match);
+                block = new Block(start, next - start, checksum, old.section, old.entries);
+                reused[match] = true;
+                if (match < lastReused) reordered = true;
+                lastReused = match;
+            } else {
+                BlockSink sink = new BlockSink(errorOut);
+                scanner.scan(content, start, next, true, sink);
+                layout.errors += sink.errors;
+                block = new Block(start, next - start, checksum, sink.section, sink.entries);
+                layout.candidates.addAll(sink.entries.keySet());
+            }
+            layout.blocks.add(block);
+            layout.blocksBySection.computeIfAbsent(block.section, s -> new ArrayList<>()).add(block);
+            start = next;
+        }
+
+        if (previous != null) {
+            for (int i = 0; i < reused.length; i++) {
+                if (!reused[i] || reordered) layout.candidates.addAll(previous.blocks.get(i).entries.keySet());
+            }
+            if (reordered) {
+                for (Block block : layout.blocks) layout.candidates.addAll(block.entries.keySet());
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the number of syntax errors found in the blocks parsed by {@link #build}.
+     */
+    int errors() {
+        return errors;
+    }
+
+    /**
+     * Returns the keys whose value may differ from the previous layout.
+     */
+    Set<String> candidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns the value the file assigns to {@code key}, or {@code null} if no block defines it.
+     */
+    String resolve(String key) {
+        // A key "a:b:c" can come from section "a" or section "a:b"; try every split.
+        String value = null;
+        long winner = -1;
+        for (int colon = key.indexOf(':'); colon != -1; colon = key.indexOf(':', colon + 1)) {
+            List<Block> candidates = blocksBySection.get(key.substring(0, colon));
+            if (candidates == null) continue;
+            for (int i = candidates.size() - 1; i >= 0; i--) {
+                Block block = candidates.get(i);
+                if (block.offset > winner && block.entries.containsKey(key)) {
+                    value = block.entries.get(key);
+                    winner = block.offset;
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    // Returns the start of the next line after start whose first non-blank byte is '['.
+    private static int nextHeader(ByteBuffer content, int start, int end) {
+        int line = start;
+        boolean first = true;
+        while (line < end) {
+            int i = line;
+            while (i < end && isBlank(content.get(i))) i++;
+            if (!first && i < end && content.get(i) == '[') return line;
+            first = false;
+            while (i < end && content.get(i) != '\n' && content.get(i) != '\r') i++;
+            if (i < end && content.get(i) == '\r' && i + 1 < end && content.get(i + 1) == '\n') i++;
+            line = i + 1;
+        }
+        return end;
+    }
+
+    // Blank as in String.trim(), minus the line terminators.
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ' && b != '\n' && b != '\r';
+    }
+
+    private static final class BlockSink implements INIByteScanner.Sink {
+        private final PrintStream errorOut;
+        private final Map<String, String> entries = new LinkedHashMap<>();
+        private String section = "";
+        private int errors;
+
+        BlockSink(PrintStream errorOut) {
+            this.errorOut = errorOut;
+        }
+
+        @Override
+        public void section(String name) {
+            section = name;
+        }
+
+        @Override
+        public void keyValue(String key, String value) {
+            entries.put(section + ":" + key, value);
+        }
+
+        @Override
+        public void error(String message) {
+            errors++;
+            errorOut.println(message);
+        }
+    }
+}
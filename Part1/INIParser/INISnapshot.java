@@ -0,0 +1,377 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A read-only, memory-mapped binary image of a parsed INI file.
+ *
+ * <p>
+ * Compiling a file once and mapping the compiled image on later starts avoids parsing text at
+ * startup. The image consists of a header identifying the source file, a key table sorted by the
+ * UTF-8 bytes of the keys, and a pool holding the UTF-8 bytes of all keys and values:
+ *
+ * <pre>
+ * int  magic, int version
+ * long source size, long source modification time (ms), long source CRC32C
+ * int  entry count
+ * entry count x { int key offset, int key length, int value offset, int value length }
+ * pool bytes
+ * </pre>
+ *
+ * <p>
+ * Offsets are relative to the start of the pool, and a value length of -1 marks a {@code null}
+ * value. Keys are stored case-folded. Lookups binary-search the key table, comparing the requested
+ * key with the mapped bytes directly and ignoring case, like {@link INIParser}. {@link #getInt}
+ * and {@link #getBoolean} also read the value bytes directly; a value's String is only created the
+ * first time {@link #getString} returns it, and is then cached.
+ *
+ * <p>
+ * {@link #open(String, String)} recompiles the image automatically whenever the size,
+ * modification time or checksum of the source file no longer matches the ones recorded in it.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> An {@code INISnapshot} is immutable and safe for concurrent use.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INISnapshot config = INISnapshot.open("config.ini", "config.ini.bin");
+ * int year = config.getInt("wine:year", -1);
+ * }</pre>
+ */
+public final class INISnapshot {
+
+    private static final int MAGIC = 0x494E4953; // "INIS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 4;
+    private static final int ENTRY_BYTES = 16;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int poolStart;
+    private final String[] values;
+
+    private INISnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an INI snapshot");
+        }
+        this.count = buffer.getInt(32);
+        this.poolStart = HEADER_BYTES + count * ENTRY_BYTES;
+        this.values = new String[count];
+    }
+
+    /**
+     * Opens the compiled image of an INI file, compiling it first if it is missing or stale.
+     *
+     * @param sourceFile   the name of the INI file
+     * @param snapshotFile the name of the compiled image
+     * @return the mapped image, reflecting the current contents of {@code sourceFile}
+     * @throws IOException if either file cannot be read, or the image cannot be written
+     */
+    public static INISnapshot open(String sourceFile, String snapshotFile) throws IOException {
+        Path source = Paths.get(sourceFile);
+        Path snapshot = Paths.get(snapshotFile);
+        long[] fingerprint = fingerprint(source);
+        if (Files.exists(snapshot)) {
+            try {
+                INISnapshot mapped = map(snapshot);
+                if (mapped.matches(fingerprint)) return mapped;
+            } catch (IOException e) {
+                // An image of another version, or a damaged one, is recompiled below.
+            }
+        }
+        INIParser parser = new INIParser();
+        parser.loadMapped(sourceFile);
+        write(parser.entries(), fingerprint, snapshot);
+        return map(snapshot);
+    }
+
+    /**
+     * Compiles the dictionary of {@code parser} into an image of {@code sourceFile}.
+     *
+     * <p>
+     * The image records the current size, modification time and checksum of {@code sourceFile},
+     * so it should be compiled from a parser that holds exactly that file's contents.
+     *
+     * @param parser       the parser whose dictionary is compiled
+     * @param sourceFile   the name of the INI file the dictionary was loaded from
+     * @param snapshotFile the name of the image to write; an existing image is replaced
+     * @throws IOException if the source file cannot be read or the image cannot be written
+     */
+    public static void compile(INIParser parser, String sourceFile, String snapshotFile) throws IOException {
+        write(parser.entries(), fingerprint(Paths.get(sourceFile)), Paths.get(snapshotFile));
+    }
+
+    /**
+     * Retrieves the string value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default value if the key is not found
+     * @return the value associated with the key, or {@code defaultValue} if the key is absent
+     */
+    public String getString(String key, String defaultValue) {
+        int index = find(key);
+        if (index < 0) return defaultValue;
+        String value = values[index];
+        if (value == null) {
+            int length = valueLength(index);
+            if (length < 0) return null;
+            value = decode(valueOffset(index), length);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the integer value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default integer value if the key is not found or cannot be parsed as an integer
+     * @return the integer value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public int getInt(String key, int defaultValue) {
+        int index = find(key);
+        if (index < 0) return defaultValue;
+        int offset = valueOffset(index);
+        int length = valueLength(index);
+        if (length <= 0) return defaultValue;
+
+        int i = offset, end = offset + length;
+        boolean negative = buffer.get(i) == '-';
+        if (negative || buffer.get(i) == '+') i++;
+        if (i == end || end - i > 10) return parseIntFallback(index, defaultValue);
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return parseIntFallback(index, defaultValue);
+            result = result * 10 + digit;
+        }
+        if (negative) result = -result;
+        return result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ? defaultValue : (int) result;
+    }
+
+    // Integer.parseInt also accepts non-ASCII digits, so anything unusual goes through it.
+    private int parseIntFallback(int index, int defaultValue) {
+        try {
+            return Integer.parseInt(decode(valueOffset(index), valueLength(index)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves the boolean value associated with the specified key.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default boolean value if the key is not found or cannot be parsed as a boolean
+     * @return the boolean value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int index = find(key);
+        if (index < 0) return defaultValue;
+        int offset = valueOffset(index);
+        int length = valueLength(index);
+        if (length < 0) return defaultValue;
+        if (equalsIgnoreCase(offset, length, "1") || equalsIgnoreCase(offset, length, "y")
+                || equalsIgnoreCase(offset, length, "yes") || equalsIgnoreCase(offset, length, "true")) {
+            return true;
+        }
+        if (equalsIgnoreCase(offset, length, "0") || equalsIgnoreCase(offset, length, "n")
+                || equalsIgnoreCase(offset, length, "no") || equalsIgnoreCase(offset, length, "false")) {
+            return false;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Checks if a specific entry is present within the image.
+     *
+     * @param entry the entry to search for
+     * @return {@code true} if the entry exists, {@code false} otherwise
+     */
+    public boolean findEntry(String entry) {
+        return find(entry) >= 0;
+    }
+
+    /**
+     * Returns the number of entries in the image.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    private boolean matches(long[] fingerprint) {
+        return buffer.getLong(8) == fingerprint[0]
+                && buffer.getLong(16) == fingerprint[1]
+                && buffer.getLong(24) == fingerprint[2];
+    }
+
+    private int find(String key) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(HEADER_BYTES + mid * ENTRY_BYTES, key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // Compares the case-folded key stored in an entry with key folded the same way, in code point
+    // order, without encoding or copying key.
+    private int compare(int entry, String key) {
+        int i = poolStart + buffer.getInt(entry);
+        int end = i + buffer.getInt(entry + 4);
+        int j = 0;
+        while (i < end && j < key.length()) {
+            int b = buffer.get(i) & 0xFF;
+            int stored;
+            if (b < 0x80) {
+                stored = b;
+                i += 1;
+            } else if (b < 0xE0) {
+                stored = ((b & 0x1F) << 6) | (buffer.get(i + 1) & 0x3F);
+                i += 2;
+            } else if (b < 0xF0) {
+                stored = ((b & 0x0F) << 12) | ((buffer.get(i + 1) & 0x3F) << 6) | (buffer.get(i + 2) & 0x3F);
+                i += 3;
+            } else {
+                stored = ((b & 0x07) << 18) | ((buffer.get(i + 1) & 0x3F) << 12)
+                        | ((buffer.get(i + 2) & 0x3F) << 6) | (buffer.get(i + 3) & 0x3F);
+                i += 4;
+            }
+            int wanted = key.codePointAt(j);
+            j += Character.charCount(wanted);
+            wanted = fold(wanted);
+            if (stored != wanted) return Integer.compare(stored, wanted);
+        }
+        if (i < end) return 1;
+        return j < key.length() ? -1 : 0;
+    }
+
+    // Folds a code point like INIKeyTable folds chars, so e.g. a final sigma matches sigma.
+    private static int fold(int codePoint) {
+        return Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+
+    private static String fold(String key) {
+        StringBuilder folded = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); ) {
+            int codePoint = key.codePointAt(i);
+            i += Character.charCount(codePoint);
+            folded.appendCodePoint(fold(codePoint));
+        }
+        return folded.toString();
+    }
+
+    private boolean equalsIgnoreCase(int offset, int length, String ascii) {
+        if (length != ascii.length()) return false;
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(offset + i);
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private int valueOffset(int index) {
+        return poolStart + buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    private int valueLength(int index) {
+        return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 12);
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static INISnapshot map(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new INISnapshot(buffer);
+        }
+    }
+
+    // Size, modification time and CRC32C of the source file.
+    private static long[] fingerprint(Path source) throws IOException {
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        }
+        return new long[] {size, modified, crc.getValue()};
+    }
+
+    private static void write(Map<String, String> entries, long[] fingerprint, Path snapshot) throws IOException {
+        int count = entries.size();
+        byte[][] keys = new byte[count][];
+        byte[][] values = new byte[count][];
+        Integer[] order = new Integer[count];
+        int i = 0;
+        long poolSize = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keys[i] = fold(entry.getKey()).getBytes(StandardCharsets.UTF_8);
+            values[i] = entry.getValue() != null ? entry.getValue().getBytes(StandardCharsets.UTF_8) : null;
+            poolSize += keys[i].length + (values[i] != null ? values[i].length : 0);
+            order[i] = i;
+            i++;
+        }
+        if (HEADER_BYTES + (long) count * ENTRY_BYTES + poolSize > Integer.MAX_VALUE) {
+            throw new IOException("Dictionary too large for a snapshot");
+        }
+        // Unsigned UTF-8 byte order of the folded keys is the folded code point order compare()
+        // relies on.
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        ByteBuffer table = ByteBuffer.allocate(HEADER_BYTES + count * ENTRY_BYTES);
+        table.putInt(MAGIC).putInt(VERSION)
+                .putLong(fingerprint[0]).putLong(fingerprint[1]).putLong(fingerprint[2])
+                .putInt(count);
+        int offset = 0;
+        for (int index : order) {
+            table.putInt(offset).putInt(keys[index].length);
+            offset += keys[index].length;
+            if (values[index] != null) {
+                table.putInt(offset).putInt(values[index].length);
+                offset += values[index].length;
+            } else {
+                table.putInt(offset).putInt(-1);
+            }
+        }
+
+        Path temp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                out.write(table.array());
+                for (int index : order) {
+                    out.write(keys[index]);
+                    if (values[index] != null) out.write(values[index]);
+                }
+            }
+            INIDocument.replace(temp, snapshot);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits character input into lines and reports their contents to an {@link INIEventHandler}.
+ *
+ * <p>
+ * Lines end at {@code '\n'}, {@code '\r'} or {@code "\r\n"}, as with
+ * {@link java.io.BufferedReader#readLine()}. Lines are trimmed and classified in place in a
+ * reusable buffer, so only the reported names, keys, values and texts are turned into Strings,
+ * and memory use does not depend on the size of the input.
+ */
+final class INIStreamParser {
+
+    private final Reader reader;
+    private final INIEventHandler handler;
+
+    private char[] buf = new char[8192];
+    private int start;
+    private int limit;
+    private long bufOffset;
+    private long lineNumber = 1;
+    private String section = "";
+
+    INIStreamParser(Reader reader, INIEventHandler handler) {
+        this.reader = reader;
+        this.handler = handler;
+    }
+
+    void parse() throws IOException {
+        boolean eof = false;
+        boolean skipLF = false;
+        int scanned = 0; // chars after start known to hold no line terminator
+        while (true) {
+            if (skipLF && start < limit) {
+                if (buf[start] == '\n') start++;
+                skipLF = false;
+            }
+            int i = start + scanned;
+            while (i < limit && buf[i] != '\n' && buf[i] != '\r') i++;
+            if (i < limit) {
+                line(start, i);
+                skipLF = buf[i] == '\r';
+                start = i + 1;
+                scanned = 0;
+                lineNumber++;
+                continue;
+            }
+            if (eof) {
+                if (start < limit) line(start, limit);
+                return;
+            }
+            scanned = limit - start;
+            eof = !fill();
+        }
+    }
+
+    // Moves the unconsumed chars to the front, growing the buffer if needed, and reads more.
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            bufOffset += start;
+            limit -= start;
+            start = 0;
+        }
+        if (limit == buf.length) {
+            char[] grown = new char[buf.length * 2];
+            System.arraycopy(buf, 0, grown, 0, limit);
+            buf = grown;
+        }
+        int read = reader.read(buf, limit, buf.length - limit);
+        if (read < 0) return false;
+        limit += read;
+        return true;
+    }
+
+    private void line(int from, int to) {
+        long offset = bufOffset + from;
+        int s = from, e = to;
+        while (s < e && buf[s] <= ' ') s++;
+        while (e > s && buf[e - 1] <= ' ') e--;
+        if (s == e) return;
+
+        char first = buf[s];
+        if (first == '#' || first == ';') {
+            handler.comment(new String(buf, s, e - s), lineNumber, offset);
+            return;
+        }
+
+        if (first == '[') {
+            int close = indexOf(s, e, ']');
+            if (close == -1) {
+                handler.syntaxError("Syntax error: malformed section header.", lineNumber, offset);
+                section = "";
+            } else {
+                section = trimmed(s + 1, close).toLowerCase();
+            }
+            handler.section(section, lineNumber, offset);
+            return;
+        }
+
+        int eq = indexOf(s, e, '=');
+        if (eq == -1) {
+            handler.syntaxError("Syntax error: malformed key-value pair.", lineNumber, offset);
+            return;
+        }
+        String key = trimmed(s, eq).toLowerCase();
+
+        int v = eq + 1;
+        while (v < e && buf[v] <= ' ') v++;
+        if (e - v >= 2 && (buf[v] == '"' || buf[v] == '\'') && buf[e - 1] == buf[v]) {
+            v++;
+            e--;
+        }
+        handler.keyValue(section, key, new String(buf, v, e - v), lineNumber, offset);
+    }
+
+    private String trimmed(int s, int e) {
+        while (s < e && buf[s] <= ' ') s++;
+        while (e > s && buf[e - 1] <= ' ') e--;
+        return new String(buf, s, e - s);
+    }
+
+    private int indexOf(int s, int e, char c) {
+        for (int i = s; i < e; i++) {
+            if (buf[i] == c) return i;
+        }
+        return -1;
+    }
+}
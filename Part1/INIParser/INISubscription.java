@@ -0,0 +1,105 @@
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A listener registered for changes to one entry, or to the entries of one section, of an
+ * {@link INIParser}.
+ *
+ * <p>
+ * Subscriptions are created by {@link INIParser#subscribe} and {@link INIParser#subscribeSection}.
+ * Changes are delivered asynchronously and coalesced: keys that change while the listener has
+ * not yet been called, or is still running, are collected and passed to it in a single later
+ * call. A listener is never called concurrently with itself, and always receives every changed
+ * key it is subscribed to at least once after the change.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> {@link #close()} may be called from any thread, including from
+ * the listener.
+ */
+public final class INISubscription implements Closeable {
+
+    private final INIListeners owner;
+    final String name;
+    final boolean section;
+    private final Consumer<Set<String>> listener;
+    private final Executor executor;
+
+    // Changed keys not yet passed to the listener, and whether a delivery is queued or running.
+    private Set<String> changed = new HashSet<>();
+    private boolean scheduled;
+    private volatile boolean closed;
+
+    INISubscription(INIListeners owner, String name, boolean section, Consumer<Set<String>> listener,
+            Executor executor) {
+        this.owner = owner;
+        this.name = name;
+        this.section = section;
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the entry or section name this subscription listens to.
+     *
+     * @return the name in lowercase, as the parser reports keys
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks whether this subscription listens to a whole section.
+     *
+     * @return {@code true} for a section subscription, {@code false} for a single entry
+     */
+    public boolean isSection() {
+        return section;
+    }
+
+    // Adds a changed key, returning true if a delivery must be scheduled for it.
+    synchronized boolean offer(String key) {
+        changed.add(key);
+        if (scheduled) return false;
+        scheduled = true;
+        return true;
+    }
+
+    void schedule() {
+        executor.execute(this::deliver);
+    }
+
+    private void deliver() {
+        Set<String> keys;
+        synchronized (this) {
+            keys = changed;
+            changed = new HashSet<>();
+        }
+        if (!closed) {
+            try {
+                listener.accept(keys);
+            } catch (RuntimeException e) {
+                INIParser.errorCallback().println("Change listener for " + name + " failed: " + e);
+            }
+        }
+        synchronized (this) {
+            if (changed.isEmpty() || closed) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Stops delivering changes to the listener. A call that is already running is allowed to
+     * complete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        owner.remove(this);
+    }
+}
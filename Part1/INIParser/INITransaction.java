@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes of one {@link INIParser#update} call, collected before any of them is applied.
+ *
+ * <p>
+ * {@link #set} and {@link #unset} only record a change and check that it is valid; an invalid
+ * change throws at once, so the whole update is abandoned before anything has been applied.
+ * Once the update's callback returns, the parser applies the recorded changes in order, so a
+ * later change of the same entry wins. A transaction may only be used inside its callback.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * Set<String> changed = parser.update(tx -> tx
+ *         .set("wine:grape", "Merlot")
+ *         .set("wine:year", "2001")
+ *         .unset("wine:alcohol"));
+ * }</pre>
+ */
+public final class INITransaction {
+
+    static final class Change {
+        final String key;
+        final String value;
+        final boolean unset;
+
+        Change(String key, String value, boolean unset) {
+            this.key = key;
+            this.value = value;
+            this.unset = unset;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+    private boolean closed;
+
+    INITransaction() {
+    }
+
+    /**
+     * Records that an entry is to be set to the specified value.
+     *
+     * @param entry the entry key
+     * @param value the value to associate with the entry
+     * @return this transaction
+     * @throws IllegalArgumentException if the entry is null or empty
+     * @throws IllegalStateException    if the update this transaction belongs to has completed
+     */
+    public INITransaction set(String entry, String value) {
+        checkOpen();
+        if (entry == null || entry.isEmpty()) {
+            throw new IllegalArgumentException("Entry name must not be null or empty");
+        }
+        changes.add(new Change(entry, value, false));
+        return this;
+    }
+
+    /**
+     * Records that an entry is to be removed, if it exists.
+     *
+     * @param entry the entry to remove
+     * @return this transaction
+     * @throws IllegalArgumentException if the entry is null
+     * @throws IllegalStateException    if the update this transaction belongs to has completed
+     */
+    public INITransaction unset(String entry) {
+        checkOpen();
+        if (entry == null) {
+            throw new IllegalArgumentException("Entry name must not be null");
+        }
+        changes.add(new Change(entry, null, true));
+        return this;
+    }
+
+    /**
+     * Returns the number of changes recorded so far.
+     *
+     * @return the number of recorded sets and unsets
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    // Ends recording and returns the changes, in the order they were recorded.
+    List<Change> close() {
+        closed = true;
+        return changes;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("INITransaction is already applied");
+    }
+}
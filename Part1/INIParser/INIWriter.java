@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes an {@link INIDictionary} as INI text that loads back into the same entries.
+ *
+ * <p>
+ * Sections are written in the order of the section index, each key in the order it was added,
+ * and entries of the unnamed section first, before any header. Text is collected in one char
+ * buffer that is handed to the destination only when full, so no String is built per line.
+ * Values that {@code load} would otherwise change, because they have surrounding whitespace or
+ * quotes, are written in double quotes. Entries that no INI line can represent are skipped and
+ * reported to the error stream.
+ */
+final class INIWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int length;
+
+    private final Writer writer;
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+
+    INIWriter(Writer writer) {
+        this.writer = writer;
+        this.channel = null;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    INIWriter(WritableByteChannel channel) {
+        this.writer = null;
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect(BUFFER_SIZE * 3);
+    }
+
+    /**
+     * Writes the entries of {@code dictionary} and flushes them to the destination.
+     *
+     * @return the number of entries written
+     */
+    int write(INIDictionary dictionary, PrintStream errors) throws IOException {
+        int written = 0;
+        boolean first = true;
+        for (INIKeyTable.Entry entry : dictionary.sectionEntries("")) {
+            if (entry(entry.key, 1, entry.value(), errors)) written++;
+            first = false;
+        }
+        for (int i = 0, n = dictionary.sectionCount(); i < n; i++) {
+            String section = dictionary.sectionName(i);
+            if (section.isEmpty()) continue;
+            if (!representable(section, 0, false)) {
+                errors.println("Cannot serialize section [" + section + "], skipped");
+                continue;
+            }
+            boolean header = false;
+            for (INIKeyTable.Entry entry : dictionary.sectionEntries(section)) {
+                if (entry.key.length() == section.length()) {
+                    errors.println("Cannot serialize entry without a section: " + entry.key + ", skipped");
+                    continue;
+                }
+                if (!header) {
+                    // Written with the first entry, so a section of unwritable entries leaves no header.
+                    if (!first) append('\n');
+                    first = false;
+                    header = true;
+                    append('[');
+                    append(section);
+                    append("]\n");
+                }
+                if (entry(entry.key, section.length() + 1, entry.value(), errors)) written++;
+            }
+        }
+        flush(true);
+        return written;
+    }
+
+    // Appends "key = value" for the part of fullKey from start on, or reports why it cannot.
+    private boolean entry(String fullKey, int start, String value, PrintStream errors) throws IOException {
+        if (!representable(fullKey, start, true) || value == null || hasLineBreak(value)) {
+            errors.println("Cannot serialize entry " + fullKey + ", skipped");
+            return false;
+        }
+        append(fullKey, start);
+        append(" = ");
+        boolean quote = needsQuotes(value);
+        if (quote) append('"');
+        append(value);
+        if (quote) append('"');
+        append('\n');
+        return true;
+    }
+
+    // Whether write() represents the entry, so that loading its output restores it.
+    static boolean writable(String key, String value) {
+        int colon = key.indexOf(':');
+        return colon != -1 && (colon == 0 || representable(key.substring(0, colon), 0, false))
+                && representable(key, colon + 1, true) && value != null && !hasLineBreak(value);
+    }
+
+    // Whether loading would change the value, by trimming it or removing its quotes, unless quoted.
+    static boolean needsQuotes(String value) {
+        int n = value.length();
+        return n > 0 && (value.charAt(0) <= ' ' || value.charAt(n - 1) <= ' '
+                || n >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'') && value.charAt(n - 1) == value.charAt(0));
+    }
+
+    // Whether name, from start on, reads back unchanged as a key, or as a section name inside [ ].
+    static boolean representable(String name, int start, boolean key) {
+        int n = name.length();
+        if (start == n) return key;
+        char first = name.charAt(start);
+        if (first <= ' ' || name.charAt(n - 1) <= ' ') return false;
+        if (key && (first == '[' || first == '#' || first == ';')) return false;
+        char forbidden = key ? '=' : ']';
+        for (int i = start; i < n; i++) {
+            char c = name.charAt(i);
+            if (c == forbidden || c == '\n' || c == '\r') return false;
+        }
+        return true;
+    }
+
+    static boolean hasLineBreak(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private void append(char c) throws IOException {
+        if (length == buf.length) flush(false);
+        buf[length++] = c;
+    }
+
+    private void append(String s) throws IOException {
+        append(s, 0);
+    }
+
+    private void append(String s, int from) throws IOException {
+        int n = s.length();
+        while (from < n) {
+            if (length == buf.length) flush(false);
+            int count = Math.min(n - from, buf.length - length);
+            s.getChars(from, from + count, buf, length);
+            length += count;
+            from += count;
+        }
+    }
+
+    private void flush(boolean last) throws IOException {
+        if (writer != null) {
+            writer.write(buf, 0, length);
+            length = 0;
+            if (last) writer.flush();
+            return;
+        }
+        CharBuffer in = CharBuffer.wrap(buf, 0, length);
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, last);
+            drain();
+            if (result.isUnderflow()) break;
+        }
+        if (last) {
+            while (encoder.flush(bytes).isOverflow()) drain();
+            drain();
+            encoder.reset();
+        }
+        // A high surrogate at the end of the buffer waits for its low surrogate.
+        int left = in.remaining();
+        System.arraycopy(buf, length - left, buf, 0, left);
+        length = left;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * A read-only view over several {@link INIParser}s, queried in priority order.
+ *
+ * <p>
+ * A typical use is a defaults file overridden by a per-environment file, in turn overridden by
+ * a per-host file. Each layer stays a separate {@code INIParser}: nothing is copied, and every
+ * layer can be modified or {@linkplain INIParser#reload(String) reloaded} on its own, with the
+ * change visible through this view immediately.
+ *
+ * <p>
+ * A query hashes the key once and then asks each layer in turn. Every layer keeps a Bloom filter
+ * in front of its table, so a layer that does not define the key is usually skipped after
+ * testing a single word of the filter, and a query costs at most one probe per layer. The first
+ * layer that defines the key decides the result: if its value cannot be converted to the
+ * requested type, the default value is returned rather than a value from a lower layer.
+ *
+ * <p>
+ * <strong>Thread Safety:</strong> A {@code LayeredINIParser} is as thread-safe as its layers.
+ *
+ * <h3>Example Usage:</h3>
+ * <pre>{@code
+ * INIParser defaults = new INIParser(), environment = new INIParser(), host = new INIParser();
+ * defaults.load("defaults.ini");
+ * environment.load("production.ini");
+ * host.load("host-42.ini");
+ *
+ * LayeredINIParser config = new LayeredINIParser(host, environment, defaults);
+ * int port = config.getInt("server:port", 8080);
+ * }</pre>
+ */
+public final class LayeredINIParser {
+
+    private final INIParser[] layers;
+
+    /**
+     * Constructs a view over the given layers.
+     *
+     * @param layers the layers, highest priority first
+     * @throws NullPointerException if {@code layers} or any of its elements is null
+     */
+    public LayeredINIParser(INIParser... layers) {
+        this.layers = layers.clone();
+        for (INIParser layer : this.layers) {
+            if (layer == null) throw new NullPointerException("layer");
+        }
+    }
+
+    /**
+     * Returns the number of layers.
+     *
+     * @return the number of layers
+     */
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    /**
+     * Returns the layer at the given priority, for example to reload it.
+     *
+     * @param index the priority of the layer, 0 being the highest
+     * @return the layer
+     * @throws IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public INIParser getLayer(int index) {
+        return layers[index];
+    }
+
+    /**
+     * Retrieves the string value associated with the specified key in the highest layer that
+     * defines it.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default value if no layer defines the key
+     * @return the value associated with the key, or {@code defaultValue} if the key is absent
+     */
+    public String getString(String key, String defaultValue) {
+        INIKeyTable.Entry entry = find(key);
+        return entry != null ? entry.value() : defaultValue;
+    }
+
+    /**
+     * Retrieves the integer value associated with the specified key in the highest layer that
+     * defines it.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default integer value if no layer defines the key or its value cannot be parsed as an integer
+     * @return the integer value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public int getInt(String key, int defaultValue) {
+        INIKeyTable.Entry entry = find(key);
+        return entry != null ? entry.intValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the long value associated with the specified key in the highest layer that
+     * defines it.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default long value if no layer defines the key or its value cannot be parsed as a long
+     * @return the long value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public long getLong(String key, long defaultValue) {
+        INIKeyTable.Entry entry = find(key);
+        return entry != null ? entry.longValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the double value associated with the specified key in the highest layer that
+     * defines it.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default double value if no layer defines the key or its value cannot be parsed as a double
+     * @return the double value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public double getDouble(String key, double defaultValue) {
+        INIKeyTable.Entry entry = find(key);
+        return entry != null ? entry.doubleValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Retrieves the boolean value associated with the specified key in the highest layer that
+     * defines it.
+     *
+     * @param key          the key to retrieve the value for
+     * @param defaultValue the default boolean value if no layer defines the key or its value cannot be parsed as a boolean
+     * @return the boolean value, or {@code defaultValue} if the key is absent or invalid
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        INIKeyTable.Entry entry = find(key);
+        return entry != null ? entry.booleanValue(defaultValue) : defaultValue;
+    }
+
+    /**
+     * Checks if any layer defines a specific entry.
+     *
+     * @param entry the entry to search for
+     * @return {@code true} if the entry exists in at least one layer, {@code false} otherwise
+     */
+    public boolean findEntry(String entry) {
+        return find(entry) != null;
+    }
+
+    /**
+     * Returns the index of the highest layer that defines a specific entry.
+     *
+     * @param entry the entry to search for
+     * @return the priority of the defining layer, or -1 if no layer defines the entry
+     */
+    public int findLayer(String entry) {
+        int hash = INIKeyTable.hash(entry);
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i].current().entry(entry, hash) != null) return i;
+        }
+        return -1;
+    }
+
+    private INIKeyTable.Entry find(String key) {
+        int hash = INIKeyTable.hash(key);
+        for (INIParser layer : layers) {
+            INIKeyTable.Entry entry = layer.current().entry(key, hash);
+            if (entry != null) return entry;
+        }
+        return null;
+    }
+}